@@ -19,22 +19,39 @@
 
 package com.baidu.hugegraph.concurrent;
 
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 
+import com.baidu.hugegraph.util.E;
 import com.baidu.hugegraph.util.Log;
 
 public class AtomicLock {
 
     private static final Logger LOG = Log.logger(LockManager.class);
 
+    // The times of spinning before parking
+    private static final int SPINS = 32;
+    // The min and max nanoseconds to park between retries
+    private static final long MIN_PARK_NANOS = 1000L;
+    private static final long MAX_PARK_NANOS = 1000000L;
+
     private String name;
-    private AtomicReference<Thread> sign;
+    // The holder thread, or a Holder if locked by lockAsync()
+    private AtomicReference<Object> sign;
+    private final Queue<Waiter> waiters;
 
     public AtomicLock(String name) {
         this.name = name;
         this.sign = new AtomicReference<>();
+        this.waiters = new ConcurrentLinkedQueue<>();
     }
 
     public boolean tryLock() {
@@ -53,6 +70,7 @@ public class AtomicLock {
                       "which is held by other threads now.",
                       current.getName(), this.name));
         }
+        this.signal();
     }
 
     public boolean lock(int retries) {
@@ -75,6 +93,87 @@ public class AtomicLock {
         return isLocked;
     }
 
+    /**
+     * Try to lock in the specified time, spin a while at first, then park
+     * with exponential backoff from microseconds, and would be unparked
+     * once the lock is released
+     * @param timeout The max time in milliseconds to wait
+     * @return true if locked, false if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean tryLock(long timeout) throws InterruptedException {
+        long deadline = KeyLock.deadline(timeout);
+        if (this.tryLock()) {
+            return true;
+        }
+        for (int i = 0; i < SPINS; i++) {
+            if (this.sign.get() == null && this.tryLock()) {
+                return true;
+            }
+        }
+
+        Waiter waiter = new Waiter(Thread.currentThread());
+        this.waiters.add(waiter);
+        boolean locked = false;
+        try {
+            long park = MIN_PARK_NANOS;
+            while (!(locked = this.tryLock())) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, Math.min(park, remaining));
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                park = Math.min(park << 1, MAX_PARK_NANOS);
+            }
+            return true;
+        } finally {
+            this.waiters.remove(waiter);
+            if (!locked && this.sign.get() == null) {
+                // Pass the signal received by this thread to other waiters
+                this.signal();
+            }
+        }
+    }
+
+    /**
+     * Lock asynchronously without blocking the calling thread, the future
+     * is completed with a holder once the lock is acquired, and the lock
+     * should be released by the holder, which can be done in any thread.
+     * NOTE: cancel the future to give up waiting.
+     * @return The future of the holder of lock
+     */
+    public CompletableFuture<Holder> lockAsync() {
+        return this.lockAsync(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Lock asynchronously like lockAsync(), the future is completed in the
+     * executor if the lock is not acquired immediately, so the dependent
+     * stages never run in the thread which releases the lock.
+     * @param executor The executor to complete the future
+     * @return The future of the holder of lock
+     */
+    public CompletableFuture<Holder> lockAsync(Executor executor) {
+        E.checkArgumentNotNull(executor, "The executor can't be null");
+        Holder holder = new Holder(this);
+        CompletableFuture<Holder> future = new CompletableFuture<>();
+        if (this.sign.compareAndSet(null, holder)) {
+            future.complete(holder);
+            return future;
+        }
+        this.waiters.add(new Waiter(future, holder, executor));
+        // The lock may be released before the waiter added
+        this.signal();
+        return future;
+    }
+
+    boolean inUse() {
+        return this.sign.get() != null || !this.waiters.isEmpty();
+    }
+
     public String name() {
         return this.name;
     }
@@ -82,4 +181,95 @@ public class AtomicLock {
     public void name(String name) {
         this.name = name;
     }
+
+    private void signal() {
+        Waiter waiter;
+        while ((waiter = this.waiters.peek()) != null) {
+            if (waiter.thread != null) {
+                // The thread will retry and dequeue itself
+                LockSupport.unpark(waiter.thread);
+                return;
+            }
+            if (waiter.future.isDone()) {
+                // Cancelled by the caller
+                this.waiters.remove(waiter);
+                continue;
+            }
+            if (!this.sign.compareAndSet(null, waiter.holder)) {
+                // Locked by others, they will signal after unlocking
+                return;
+            }
+            this.waiters.remove(waiter);
+            this.complete(waiter);
+            return;
+        }
+    }
+
+    private void complete(Waiter waiter) {
+        /*
+         * Don't complete in this thread, otherwise the dependent stages of
+         * the waiter run inside unlock(), and a chain of waiters unlocking
+         * in their stages would nest until stack overflow
+         */
+        Runnable task = () -> {
+            if (!waiter.future.complete(waiter.holder) &&
+                this.sign.compareAndSet(waiter.holder, null)) {
+                // Cancelled just now, release the lock for the next waiter
+                this.signal();
+            }
+        };
+        try {
+            waiter.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("The executor of lock '{}' rejected, complete the " +
+                     "waiter in current thread", this.name, e);
+            task.run();
+        }
+    }
+
+    /**
+     * The holder of the lock acquired by lockAsync()
+     */
+    public static final class Holder {
+
+        private final AtomicLock lock;
+
+        private Holder(AtomicLock lock) {
+            this.lock = lock;
+        }
+
+        public AtomicLock lock() {
+            return this.lock;
+        }
+
+        public void unlock() {
+            E.checkState(this.lock.sign.compareAndSet(this, null),
+                         "The lock '%s' is not held by the holder",
+                         this.lock.name);
+            this.lock.signal();
+        }
+    }
+
+    private static final class Waiter {
+
+        private final Thread thread;
+        private final CompletableFuture<Holder> future;
+        private final Holder holder;
+        private final Executor executor;
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+            this.future = null;
+            this.holder = null;
+            this.executor = null;
+        }
+
+        private Waiter(CompletableFuture<Holder> future, Holder holder,
+                       Executor executor) {
+            this.thread = null;
+            this.future = future;
+            this.holder = holder;
+            this.executor = executor;
+        }
+    }
 }
@@ -1,52 +1,54 @@
 /*
+ * Copyright 2017 HugeGraph Authors
  *
- *  Copyright 2017 HugeGraph Authors
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
  *
- *  Licensed to the Apache Software Foundation (ASF) under one or more
- *  contributor license agreements. See the NOTICE file distributed with this
- *  work for additional information regarding copyright ownership. The ASF
- *  licenses this file to You under the Apache License, Version 2.0 (the
- *  "License"); you may not use this file except in compliance with the License.
- *  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
  *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- *  Unless required by applicable law or agreed to in writing, software
- *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
- *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
- *  License for the specific language governing permissions and limitations
- *  under the License.
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
  */
 
 package com.baidu.hugegraph.concurrent;
 
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import com.baidu.hugegraph.util.E;
 
+/**
+ * A lock-free event, the state holds a signaled bit and a generation
+ * which is increased by each signal, so the waiters that were waiting
+ * when a signal came will return even if reset() follows immediately.
+ */
 public class BarrierEvent {
 
-    private final Lock lock = new ReentrantLock();
-    private final Condition cond = lock.newCondition();
-    private volatile boolean signaled = false;
+    private static final long SIGNALED = 1L;
+    private static final long GENERATION = 2L;
+
+    private static final AtomicLongFieldUpdater<BarrierEvent> STATE =
+            AtomicLongFieldUpdater.newUpdater(BarrierEvent.class, "state");
+
+    private volatile long state = 0L;
+    private final AtomicReference<Waiter> waiters = new AtomicReference<>();
 
     /**
      * Wait forever until the signal is received.
-     * @return true if signal is received
      * @throws InterruptedException if interrupted.
      */
     public void await() throws InterruptedException {
-        this.lock.lock();
-        try {
-            while (!this.signaled) {
-                this.cond.await();
-            }
-        } finally {
-            this.lock.unlock();
-        }
+        this.awaitNanos(false, 0L);
     }
 
     /**
@@ -58,50 +60,135 @@ public class BarrierEvent {
         E.checkArgument(timeout >= 0L,
                         "The time must be >= 0, but got '%d'.",
                         timeout);
-        long deadline = System.currentTimeMillis() + timeout;
-        this.lock.lock();
-        try {
-            while (!this.signaled) {
-                timeout = deadline - System.currentTimeMillis();
-                if (timeout > 0) {
-                    this.cond.await(timeout, TimeUnit.MILLISECONDS);
+        return this.awaitNanos(true, TimeUnit.MILLISECONDS.toNanos(timeout));
+    }
+
+    public void reset() {
+        long state;
+        do {
+            state = this.state;
+        } while ((state & SIGNALED) != 0L &&
+                 !STATE.compareAndSet(this, state, state & ~SIGNALED));
+    }
+
+    public void signal() {
+        this.advance();
+        // Wake up one waiter which is not cancelled
+        Waiter waiter;
+        while ((waiter = this.waiters.get()) != null) {
+            if (this.waiters.compareAndSet(waiter, waiter.next) &&
+                waiter.wakeup()) {
+                break;
+            }
+        }
+    }
+
+    public void signalAll() {
+        this.advance();
+        Waiter waiter = this.waiters.getAndSet(null);
+        for (; waiter != null; waiter = waiter.next) {
+            waiter.wakeup();
+        }
+    }
+
+    private void advance() {
+        long state;
+        do {
+            state = this.state;
+        } while (!STATE.compareAndSet(this, state,
+                                      (state + GENERATION) | SIGNALED));
+    }
+
+    private boolean awaitNanos(boolean timed, long nanos)
+                               throws InterruptedException {
+        long begin = this.state;
+        if ((begin & SIGNALED) != 0L) {
+            // Fast path: signaled already
+            return true;
+        }
+        long deadline = timed ? System.nanoTime() + nanos : 0L;
+        Waiter waiter = this.push();
+        while (true) {
+            if (waiter.woken()) {
+                return true;
+            }
+            if (Thread.interrupted()) {
+                if (waiter.cancel()) {
+                    throw new InterruptedException();
                 }
-                if (System.currentTimeMillis() >= deadline) {
-                    return this.signaled;
+                // Woken before cancelled, keep the interrupt status
+                Thread.currentThread().interrupt();
+                return true;
+            }
+            // Re-check after pushed to avoid missing the signal
+            if (this.signaledSince(begin)) {
+                waiter.cancel();
+                return true;
+            }
+            if (timed) {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0L) {
+                    // Not time out if woken before cancelled
+                    return !waiter.cancel();
                 }
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
             }
-        } finally {
-            this.lock.unlock();
         }
-        return true;
     }
 
-    public void reset() {
-        this.lock.lock();
-        try {
-            this.signaled = false;
-        } finally {
-            this.lock.unlock();
-        }
+    private boolean signaledSince(long begin) {
+        long state = this.state;
+        return (state & SIGNALED) != 0L ||
+               (state & ~SIGNALED) != (begin & ~SIGNALED);
     }
 
-    public void signal() {
-        this.lock.lock();
-        try {
-            this.signaled = true;
-            this.cond.signal();
-        } finally {
-            this.lock.unlock();
+    private Waiter push() {
+        Waiter waiter = new Waiter(Thread.currentThread());
+        while (true) {
+            Waiter head = this.waiters.get();
+            // Drop the cancelled waiters on the top
+            if (head != null && head.thread == null) {
+                this.waiters.compareAndSet(head, head.next);
+                continue;
+            }
+            waiter.next = head;
+            if (this.waiters.compareAndSet(head, waiter)) {
+                return waiter;
+            }
         }
     }
 
-    public void signalAll() {
-        this.lock.lock();
-        try {
-            this.signaled = true;
-            this.cond.signalAll();
-        } finally {
-            this.lock.unlock();
+    private static final class Waiter {
+
+        private static final AtomicReferenceFieldUpdater<Waiter, Thread>
+                THREAD = AtomicReferenceFieldUpdater.newUpdater(
+                         Waiter.class, Thread.class, "thread");
+
+        private volatile Thread thread;
+        private Waiter next;
+
+        public Waiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        public boolean wakeup() {
+            Thread thread = this.thread;
+            if (thread != null && THREAD.compareAndSet(this, thread, null)) {
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+
+        public boolean woken() {
+            return this.thread == null;
+        }
+
+        public boolean cancel() {
+            Thread thread = this.thread;
+            return thread != null && THREAD.compareAndSet(this, thread, null);
         }
     }
 }
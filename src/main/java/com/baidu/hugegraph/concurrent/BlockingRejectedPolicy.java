@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.concurrent;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.baidu.hugegraph.util.E;
+
+/**
+ * A rejection policy for backpressure, which blocks the submitter until
+ * the queue has space or the timeout expires.
+ */
+public class BlockingRejectedPolicy implements RejectedExecutionHandler {
+
+    private final long timeout;
+
+    /**
+     * @param timeout: the max time in milliseconds to wait for the queue
+     */
+    public BlockingRejectedPolicy(long timeout) {
+        E.checkArgument(timeout >= 0L,
+                        "The timeout must be >= 0, but got %s", timeout);
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException(
+                      "The executor has been shutdown");
+        }
+        try {
+            if (!executor.getQueue().offer(task, this.timeout,
+                                           TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException(String.format(
+                          "The queue is still full after waiting %s ms",
+                          this.timeout));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(
+                      "Interrupted while waiting for the queue", e);
+        }
+    }
+}
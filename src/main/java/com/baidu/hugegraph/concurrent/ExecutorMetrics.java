@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.concurrent;
+
+/**
+ * The common metrics of the thread pools, the latency is the delay from a
+ * task is submitted(or due for a scheduled task) to it starts running.
+ */
+public interface ExecutorMetrics {
+
+    /**
+     * @return The count of tasks waiting to run
+     */
+    public int queueDepth();
+
+    /**
+     * @return The approximate count of threads running tasks
+     */
+    public int activeThreads();
+
+    /**
+     * @return The average task latency in nanoseconds
+     */
+    public long averageLatency();
+
+    /**
+     * @return The max task latency in nanoseconds
+     */
+    public long maxLatency();
+}
@@ -19,21 +19,47 @@
 
 package com.baidu.hugegraph.concurrent;
 
+import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.baidu.hugegraph.util.E;
 import com.google.common.collect.ImmutableList;
-import com.google.common.util.concurrent.Striped;
+import com.google.common.math.IntMath;
 
 /**
  * KeyLock provide an interface of segment lock
+ *
+ * The segments(stripes) are recorded with acquired times, waited times and
+ * waited time, see stats(). If maxSize is larger than size, the stripes
+ * will be doubled when the waiting threads of one stripe reach the
+ * contention threshold, the growing happens at a quiescent point that no
+ * stripe is held by any thread.
  */
 public class KeyLock {
 
-    private Striped<Lock> locks;
+    // The max nanoseconds to wait for all stripes released when growing
+    private static final long GROW_TIMEOUT = 10_000_000L;
+    // The min nanoseconds to retry growing after a failed growing
+    private static final long GROW_INTERVAL = 100_000_000L;
+
+    private static final int DEFAULT_THRESHOLD = 8;
+
+    private volatile Stripe[] stripes;
+
+    private final int maxSize;
+    private final int threshold;
+
+    private volatile boolean growRequested;
+    private volatile long nextGrowTime;
+    private final AtomicBoolean growing;
 
     public KeyLock() {
         // The default size is availableProcessors() * 4
@@ -41,16 +67,40 @@ public class KeyLock {
     }
 
     public KeyLock(int size) {
-        this.locks = Striped.lock(size);
+        this(size, size, DEFAULT_THRESHOLD);
     }
 
-    private int indexOf(Lock lock) {
-        for (int i = 0; i < this.locks.size(); i++) {
-            if (this.locks.getAt(i) == lock) {
-                return i;
-            }
+    /**
+     * Create a KeyLock which grows its stripes adaptively
+     * @param size      The initial stripes count
+     * @param maxSize   The max stripes count to grow to
+     * @param threshold The waiting threads of one stripe to trigger growing
+     */
+    public KeyLock(int size, int maxSize, int threshold) {
+        E.checkArgument(size > 0,
+                        "The size of KeyLock must be > 0, but got %s", size);
+        E.checkArgument(maxSize >= size,
+                        "The max size of KeyLock must be >= size %s, " +
+                        "but got %s", size, maxSize);
+        E.checkArgument(threshold > 0,
+                        "The contention threshold must be > 0, but got %s",
+                        threshold);
+        this.stripes = newStripes(ceilToPowerOfTwo(size));
+        this.maxSize = ceilToPowerOfTwo(maxSize);
+        this.threshold = threshold;
+        this.growRequested = false;
+        // The origin of nanoTime() may be negative, so don't init with 0
+        this.nextGrowTime = System.nanoTime();
+        this.growing = new AtomicBoolean(false);
+    }
+
+    private boolean contains(Lock lock) {
+        if (!(lock instanceof Stripe)) {
+            return false;
         }
-        return -1;
+        Stripe[] stripes = this.stripes;
+        int index = ((Stripe) lock).index;
+        return index < stripes.length && stripes[index] == lock;
     }
 
     /**
@@ -60,9 +110,40 @@ public class KeyLock {
      */
     public final Lock lock(Object key) {
         E.checkArgument(key != null, "Lock key can't be null");
-        Lock lock = this.locks.get(key);
-        lock.lock();
-        return lock;
+        while (true) {
+            Stripe[] stripes = this.stripes;
+            Stripe lock = stripes[indexFor(stripes, key)];
+            this.acquire(lock);
+            if (stripes == this.stripes) {
+                return lock;
+            }
+            // The stripes were grown while waiting, retry with new stripes
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Try to lock an object in the specified time
+     * @param key       The object to lock
+     * @param timeout   The max time in milliseconds to wait
+     * @return true if locked, false if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public final boolean tryLock(Object key, long timeout)
+                                 throws InterruptedException {
+        E.checkArgument(key != null, "Lock key can't be null");
+        long deadline = deadline(timeout);
+        while (true) {
+            Stripe[] stripes = this.stripes;
+            Stripe lock = stripes[indexFor(stripes, key)];
+            if (!this.tryAcquire(lock, deadline)) {
+                return false;
+            }
+            if (stripes == this.stripes) {
+                return true;
+            }
+            lock.unlock();
+        }
     }
 
     /**
@@ -71,35 +152,38 @@ public class KeyLock {
      */
     public final void unlock(Object key) {
         E.checkArgument(key != null, "Unlock key can't be null");
-        this.locks.get(key).unlock();
+        Stripe[] stripes = this.stripes;
+        stripes[indexFor(stripes, key)].unlock();
+        if (this.growRequested) {
+            this.tryGrow();
+        }
     }
 
     /**
-     * Lock a list of object with sorted order
+     * Lock a list of object with sorted order, the same stripe of keys
+     * will be locked only once
      * @param keys The objects to lock
      * @return The locks(locked) of keys
      */
     public final List<Lock> lockAll(Object... keys) {
         E.checkArgument(keys != null && keys.length > 0,
                         "Lock keys can't be null or empty");
-        List<Lock> locks = new ArrayList<>(keys.length);
-        for (Object key : keys) {
-            E.checkArgument(key != null, "Lock key can't be null");
-            Lock lock = this.locks.get(key);
-            locks.add(lock);
-        }
-        Collections.sort(locks, (a, b) -> {
-            int diff = a.hashCode() - b.hashCode();
-            if (diff == 0 && a != b) {
-                diff = this.indexOf(a) - this.indexOf(b);
-                assert diff != 0;
+        int[] indexes = new int[keys.length];
+        while (true) {
+            Stripe[] stripes = this.stripes;
+            for (int i = 0; i < keys.length; i++) {
+                E.checkArgument(keys[i] != null, "Lock key can't be null");
+                indexes[i] = indexFor(stripes, keys[i]);
+            }
+            int size = sortAndDistinct(indexes, keys.length);
+            if (this.acquireAll(stripes, indexes, size)) {
+                List<Lock> locks = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    locks.add(stripes[indexes[i]]);
+                }
+                return Collections.unmodifiableList(locks);
             }
-            return diff;
-        });
-        for (int i = 0; i < locks.size(); i++) {
-            locks.get(i).lock();
         }
-        return Collections.unmodifiableList(locks);
     }
 
     /**
@@ -112,24 +196,146 @@ public class KeyLock {
     public List<Lock> lockAll(Object key1, Object key2) {
         E.checkArgument(key1 != null, "Lock key can't be null");
         E.checkArgument(key2 != null, "Lock key can't be null");
-        Lock lock1 = this.locks.get(key1);
-        Lock lock2 = this.locks.get(key2);
+        while (true) {
+            Stripe[] stripes = this.stripes;
+            Stripe lock1 = stripes[indexFor(stripes, key1)];
+            Stripe lock2 = stripes[indexFor(stripes, key2)];
+
+            List<Lock> locks;
+            if (lock1 == lock2) {
+                locks = ImmutableList.of(lock1);
+            } else if (lock1.index > lock2.index) {
+                locks = ImmutableList.of(lock2, lock1);
+            } else {
+                locks = ImmutableList.of(lock1, lock2);
+            }
 
-        int diff = lock1.hashCode() - lock2.hashCode();
-        if (diff == 0 && lock1 != lock2) {
-            diff = this.indexOf(lock1) - this.indexOf(lock2);
-            assert diff != 0;
+            for (int i = 0; i < locks.size(); i++) {
+                this.acquire((Stripe) locks.get(i));
+            }
+            if (stripes == this.stripes) {
+                return locks;
+            }
+            for (int i = locks.size(); i > 0; i--) {
+                locks.get(i - 1).unlock();
+            }
         }
+    }
 
-        List<Lock> locks = diff > 0 ?
-                           ImmutableList.of(lock2, lock1) :
-                           ImmutableList.of(lock1, lock2);
+    /**
+     * Lock a list of object with sorted order into a reusable handle,
+     * the same stripe of keys will be locked only once.
+     * NOTE: the handle can be reused after unlockAll(handle), and it
+     * should not be shared by multiple threads.
+     * @param handle    The handle to record the locked stripes
+     * @param keys      The objects to lock
+     * @return          The passed handle(locked)
+     */
+    public final Handle lockAllWith(Handle handle, Object... keys) {
+        E.checkArgument(handle != null, "Lock handle can't be null");
+        E.checkArgument(keys != null && keys.length > 0,
+                        "Lock keys can't be null or empty");
+        E.checkState(!handle.locked(), "The lock handle has been locked");
+        while (true) {
+            Stripe[] stripes = this.stripes;
+            int[] indexes = handle.reserve(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                E.checkArgument(keys[i] != null, "Lock key can't be null");
+                indexes[i] = indexFor(stripes, keys[i]);
+            }
+            if (this.acquireAll(stripes, handle, keys.length)) {
+                return handle;
+            }
+        }
+    }
 
-        for (int i = 0; i < locks.size(); i++) {
-            locks.get(i).lock();
+    /**
+     * Lock a collection of object with sorted order into a reusable handle
+     * @param handle    The handle to record the locked stripes
+     * @param keys      The objects to lock
+     * @return          The passed handle(locked)
+     * @see #lockAllWith(Handle, Object...)
+     */
+    public final Handle lockAllWith(Handle handle, Collection<?> keys) {
+        E.checkArgument(handle != null, "Lock handle can't be null");
+        E.checkArgument(keys != null && keys.size() > 0,
+                        "Lock keys can't be null or empty");
+        E.checkState(!handle.locked(), "The lock handle has been locked");
+        while (true) {
+            Stripe[] stripes = this.stripes;
+            int[] indexes = handle.reserve(keys.size());
+            handle.size = indexesOf(stripes, keys, indexes);
+            if (this.acquireAll(stripes, indexes, handle.size)) {
+                handle.stripes = stripes;
+                return handle;
+            }
         }
+    }
 
-        return locks;
+    /**
+     * Try to lock a collection of object with sorted order in the specified
+     * time, either all or none of the objects are locked
+     * @param keys      The objects to lock
+     * @param timeout   The max time in milliseconds to wait for all locks
+     * @return The locks(locked) of keys, or null if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public final List<Lock> tryLockAll(Collection<?> keys, long timeout)
+                                       throws InterruptedException {
+        E.checkArgument(keys != null && keys.size() > 0,
+                        "Lock keys can't be null or empty");
+        long deadline = deadline(timeout);
+        int[] indexes = new int[keys.size()];
+        while (true) {
+            Stripe[] stripes = this.stripes;
+            int size = indexesOf(stripes, keys, indexes);
+            if (!this.tryAcquireAll(stripes, indexes, size, deadline)) {
+                return null;
+            }
+            if (stripes == this.stripes) {
+                List<Lock> locks = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    locks.add(stripes[indexes[i]]);
+                }
+                return Collections.unmodifiableList(locks);
+            }
+            release(stripes, indexes, size);
+        }
+    }
+
+    /**
+     * Try to lock a collection of object with sorted order into a reusable
+     * handle in the specified time, either all or none of the objects are
+     * locked
+     * @param handle    The handle to record the locked stripes
+     * @param keys      The objects to lock
+     * @param timeout   The max time in milliseconds to wait for all locks
+     * @return true if locked, false if timed out
+     * @throws InterruptedException if interrupted while waiting
+     * @see #lockAllWith(Handle, Object...)
+     */
+    public final boolean tryLockAllWith(Handle handle, Collection<?> keys,
+                                        long timeout)
+                                        throws InterruptedException {
+        E.checkArgument(handle != null, "Lock handle can't be null");
+        E.checkArgument(keys != null && keys.size() > 0,
+                        "Lock keys can't be null or empty");
+        E.checkState(!handle.locked(), "The lock handle has been locked");
+        long deadline = deadline(timeout);
+        while (true) {
+            Stripe[] stripes = this.stripes;
+            int[] indexes = handle.reserve(keys.size());
+            int size = indexesOf(stripes, keys, indexes);
+            if (!this.tryAcquireAll(stripes, indexes, size, deadline)) {
+                return false;
+            }
+            if (stripes == this.stripes) {
+                handle.size = size;
+                handle.stripes = stripes;
+                return true;
+            }
+            release(stripes, indexes, size);
+        }
     }
 
     /**
@@ -139,8 +345,412 @@ public class KeyLock {
     public final void unlockAll(List<Lock> locks) {
         E.checkArgument(locks != null, "Unlock locks can't be null");
         for (int i = locks.size(); i > 0; i--) {
-            assert this.indexOf(locks.get(i - 1)) != -1;
+            assert this.contains(locks.get(i - 1));
             locks.get(i - 1).unlock();
         }
+        if (this.growRequested) {
+            this.tryGrow();
+        }
+    }
+
+    /**
+     * Unlock the stripes locked by lockAllWith(handle, keys), then the handle
+     * can be reused
+     * @param handle The handle to unlock
+     */
+    public final void unlockAll(Handle handle) {
+        E.checkArgument(handle != null, "Unlock handle can't be null");
+        E.checkState(handle.locked(), "The lock handle has not been locked");
+        Stripe[] stripes = handle.stripes;
+        assert stripes == this.stripes;
+        handle.stripes = null;
+        release(stripes, handle.indexes, handle.size);
+        if (this.growRequested) {
+            this.tryGrow();
+        }
+    }
+
+    /**
+     * Get the current stripes count
+     * @return The stripes count
+     */
+    public int size() {
+        return this.stripes.length;
+    }
+
+    /**
+     * Get the contention statistics of each stripe, the statistics are
+     * reset after the stripes grown.
+     * NOTE: the counters are read without locking, they are approximate
+     * @return The statistics of stripes
+     */
+    public List<StripeStats> stats() {
+        Stripe[] stripes = this.stripes;
+        List<StripeStats> stats = new ArrayList<>(stripes.length);
+        for (Stripe stripe : stripes) {
+            stats.add(new StripeStats(stripe));
+        }
+        return stats;
+    }
+
+    boolean inUse() {
+        for (Stripe stripe : this.stripes) {
+            if (stripe.isLocked() || stripe.hasQueuedThreads()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void acquire(Stripe lock) {
+        // Fast path: acquire the free stripe by CAS without timing
+        if (lock.tryLock()) {
+            lock.acquires++;
+            return;
+        }
+
+        // Include the current thread itself
+        int waiting = lock.getQueueLength() + 1;
+        long start = System.nanoTime();
+        lock.lock();
+        this.waited(lock, waiting, start);
+    }
+
+    private boolean tryAcquire(Stripe lock, long deadline)
+                               throws InterruptedException {
+        if (lock.tryLock()) {
+            lock.acquires++;
+            return true;
+        }
+
+        int waiting = lock.getQueueLength() + 1;
+        long start = System.nanoTime();
+        if (!lock.tryLock(deadline - start, TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        this.waited(lock, waiting, start);
+        return true;
+    }
+
+    private void waited(Stripe lock, int waiting, long start) {
+        lock.acquires++;
+        lock.waits++;
+        lock.waitTime += System.nanoTime() - start;
+
+        if (waiting >= this.threshold && this.size() < this.maxSize) {
+            this.growRequested = true;
+        }
+    }
+
+    private boolean tryAcquireAll(Stripe[] stripes, int[] indexes, int size,
+                                  long deadline)
+                                  throws InterruptedException {
+        int locked = 0;
+        try {
+            for (; locked < size; locked++) {
+                if (!this.tryAcquire(stripes[indexes[locked]], deadline)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            if (locked < size) {
+                // Release the acquired stripes in reverse order
+                release(stripes, indexes, locked);
+            }
+        }
+    }
+
+    private boolean acquireAll(Stripe[] stripes, Handle handle, int size) {
+        handle.size = sortAndDistinct(handle.indexes, size);
+        if (this.acquireAll(stripes, handle.indexes, handle.size)) {
+            handle.stripes = stripes;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acquireAll(Stripe[] stripes, int[] indexes, int size) {
+        for (int i = 0; i < size; i++) {
+            this.acquire(stripes[indexes[i]]);
+        }
+        if (stripes == this.stripes) {
+            return true;
+        }
+        // The stripes were grown while waiting, let the caller retry
+        release(stripes, indexes, size);
+        return false;
+    }
+
+    private void tryGrow() {
+        if (System.nanoTime() - this.nextGrowTime < 0L ||
+            !this.growing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (!this.grow()) {
+                this.nextGrowTime = System.nanoTime() + GROW_INTERVAL;
+            }
+        } finally {
+            this.growing.set(false);
+        }
+    }
+
+    private boolean grow() {
+        Stripe[] stripes = this.stripes;
+        if (stripes.length >= this.maxSize) {
+            this.growRequested = false;
+            return true;
+        }
+
+        /*
+         * Hold all stripes to wait for the quiescent point, don't block
+         * infinitely, otherwise would be deadlock with the threads that
+         * hold a stripe and are waiting for another one.
+         */
+        long deadline = System.nanoTime() + GROW_TIMEOUT;
+        int locked = 0;
+        try {
+            for (; locked < stripes.length; locked++) {
+                Stripe lock = stripes[locked];
+                if (lock.isHeldByCurrentThread()) {
+                    // Can't grow since the holding stripe would be changed
+                    return false;
+                }
+                long timeout = deadline - System.nanoTime();
+                if (!lock.tryLock(timeout, TimeUnit.NANOSECONDS)) {
+                    return false;
+                }
+            }
+            if (stripes == this.stripes) {
+                this.stripes = newStripes(stripes.length << 1);
+                this.growRequested = false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            for (int i = locked; i > 0; i--) {
+                stripes[i - 1].unlock();
+            }
+        }
+    }
+
+    private static void release(Stripe[] stripes, int[] indexes, int size) {
+        for (int i = size; i > 0; i--) {
+            stripes[indexes[i - 1]].unlock();
+        }
+    }
+
+    private static int indexesOf(Stripe[] stripes, Collection<?> keys,
+                                 int[] indexes) {
+        int i = 0;
+        for (Object key : keys) {
+            E.checkArgument(key != null, "Lock key can't be null");
+            indexes[i++] = indexFor(stripes, key);
+        }
+        return sortAndDistinct(indexes, i);
+    }
+
+    static long deadline(long timeout) {
+        E.checkArgument(timeout >= 0L,
+                        "The timeout must be >= 0, but got %s", timeout);
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    static int sortAndDistinct(int[] indexes, int size) {
+        if (size <= 1) {
+            return size;
+        }
+        Arrays.sort(indexes, 0, size);
+        int distinct = 1;
+        for (int i = 1; i < size; i++) {
+            if (indexes[i] != indexes[distinct - 1]) {
+                indexes[distinct++] = indexes[i];
+            }
+        }
+        return distinct;
+    }
+
+    private static int indexFor(Stripe[] stripes, Object key) {
+        return smear(key) & (stripes.length - 1);
+    }
+
+    static int smear(Object key) {
+        // The same hash as Striped of guava
+        int hash = key.hashCode();
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        return hash ^ (hash >>> 7) ^ (hash >>> 4);
+    }
+
+    private static Stripe[] newStripes(int size) {
+        Stripe[] stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe(i);
+        }
+        return stripes;
+    }
+
+    static int ceilToPowerOfTwo(int size) {
+        if (size > (1 << 30)) {
+            return 1 << 30;
+        }
+        return 1 << IntMath.log2(size, RoundingMode.CEILING);
+    }
+
+    /**
+     * The stripes are allocated one by one, so pad the counters written by
+     * the holder to avoid false sharing with the adjacent stripes, like the
+     * PaddedLock of Guava Striped
+     */
+    private static final class Stripe extends ReentrantLock {
+
+        private static final long serialVersionUID = -2584553347917617294L;
+
+        private volatile long padding11 = 0L;
+        private volatile long padding12 = 0L;
+        private volatile long padding13 = 0L;
+        private volatile long padding14 = 0L;
+        private volatile long padding15 = 0L;
+        private volatile long padding16 = 0L;
+        private volatile long padding17 = 0L; // the 1st 64 bytes
+
+        private final int index;
+
+        // These counters are only updated by the holder of this stripe
+        private long acquires;
+        private long waits;
+        private long waitTime;
+
+        private volatile long padding21 = 0L;
+        private volatile long padding22 = 0L;
+        private volatile long padding23 = 0L;
+        private volatile long padding24 = 0L;
+        private volatile long padding25 = 0L;
+        private volatile long padding26 = 0L;
+        private volatile long padding27 = 0L; // the 2nd 64 bytes
+
+        private Stripe(int index) {
+            super(false);
+            this.index = index;
+            this.acquires = 0L;
+            this.waits = 0L;
+            this.waitTime = 0L;
+            assert this.preventOptimizePadding() == 0L;
+        }
+
+        public long preventOptimizePadding() {
+            long p1 = this.padding11 + this.padding12 + this.padding13 +
+                      this.padding14 + this.padding15 + this.padding16 +
+                      this.padding17;
+            long p2 = this.padding21 + this.padding22 + this.padding23 +
+                      this.padding24 + this.padding25 + this.padding26 +
+                      this.padding27;
+            return p1 + p2;
+        }
+    }
+
+    /**
+     * The reusable handle of locked stripes, see lockAllWith(handle, keys)
+     */
+    public static final class Handle {
+
+        private static final int DEFAULT_CAPACITY = 16;
+
+        private Stripe[] stripes;
+        private int[] indexes;
+        private int size;
+
+        public Handle() {
+            this(DEFAULT_CAPACITY);
+        }
+
+        public Handle(int capacity) {
+            E.checkArgument(capacity > 0,
+                            "The capacity must be > 0, but got %s", capacity);
+            this.stripes = null;
+            this.indexes = new int[capacity];
+            this.size = 0;
+        }
+
+        /**
+         * @return Whether the handle is holding the locked stripes
+         */
+        public boolean locked() {
+            return this.stripes != null;
+        }
+
+        /**
+         * @return The number of the locked stripes
+         */
+        public int size() {
+            return this.locked() ? this.size : 0;
+        }
+
+        private int[] reserve(int capacity) {
+            if (this.indexes.length < capacity) {
+                this.indexes = new int[capacity];
+            }
+            this.size = 0;
+            return this.indexes;
+        }
+    }
+
+    public static final class StripeStats {
+
+        private final int index;
+        private final long acquires;
+        private final long waits;
+        private final long waitTime;
+        private final int queueLength;
+
+        private StripeStats(Stripe stripe) {
+            this.index = stripe.index;
+            this.acquires = stripe.acquires;
+            this.waits = stripe.waits;
+            this.waitTime = stripe.waitTime;
+            this.queueLength = stripe.getQueueLength();
+        }
+
+        public int index() {
+            return this.index;
+        }
+
+        /**
+         * @return The times of acquiring the stripe, including reentrant
+         */
+        public long acquires() {
+            return this.acquires;
+        }
+
+        /**
+         * @return The times of acquiring the stripe that needed to wait
+         */
+        public long waits() {
+            return this.waits;
+        }
+
+        /**
+         * @return The total time(in nanoseconds) waited for the stripe
+         */
+        public long waitTime() {
+            return this.waitTime;
+        }
+
+        /**
+         * @return The number of threads waiting for the stripe currently
+         */
+        public int queueLength() {
+            return this.queueLength;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{index=%s,acquires=%s,waits=%s," +
+                                 "wait_time=%s,queue_length=%s}",
+                                 this.index, this.acquires, this.waits,
+                                 this.waitTime, this.queueLength);
+        }
     }
 }
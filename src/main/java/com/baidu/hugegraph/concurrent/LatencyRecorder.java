@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+final class LatencyRecorder {
+
+    private final LongAdder sum = new LongAdder();
+    private final LongAdder count = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long latency) {
+        if (latency < 0L) {
+            latency = 0L;
+        }
+        this.sum.add(latency);
+        this.count.increment();
+        // Read before CAS to avoid contention on the max value
+        if (latency > this.max.get()) {
+            this.max.accumulateAndGet(latency, Math::max);
+        }
+    }
+
+    public Runnable wrap(Runnable task) {
+        long submitTime = System.nanoTime();
+        return new TimedRunnable(task, submitTime, this);
+    }
+
+    public long average() {
+        long count = this.count.sum();
+        return count == 0L ? 0L : this.sum.sum() / count;
+    }
+
+    public long max() {
+        return this.max.get();
+    }
+
+    static final class TimedRunnable implements Runnable {
+
+        private final Runnable task;
+        private final long submitTime;
+        private final LatencyRecorder latency;
+
+        public TimedRunnable(Runnable task, long submitTime,
+                             LatencyRecorder latency) {
+            this.task = task;
+            this.submitTime = submitTime;
+            this.latency = latency;
+        }
+
+        public Runnable task() {
+            return this.task;
+        }
+
+        @Override
+        public void run() {
+            this.latency.record(System.nanoTime() - this.submitTime);
+            this.task.run();
+        }
+    }
+}
@@ -21,67 +21,226 @@ package com.baidu.hugegraph.concurrent;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
+/**
+ * LockGroup holds the named locks of each kind, the locks of different
+ * kinds with the same name are independent.
+ *
+ * The idle locks can be evicted by evictIdle() in two phases: an evicted
+ * lock is still kept by the group until a later evictIdle() confirms it's
+ * not in use, and it's reused if got again before that. So a lock that has
+ * been got by a caller and locked after being evicted is never replaced.
+ * NOTE: don't keep a got lock unlocked across several evictIdle() calls,
+ * it may be released and another caller would get a new one.
+ */
 public class LockGroup {
 
     private final String name;
-    private final Map<String, Object> locksMap;
+
+    private final Locks<ReentrantLock> locks;
+    private final Locks<AtomicLock> atomicLocks;
+    private final Locks<ReentrantReadWriteLock> rwLocks;
+    private final Locks<KeyLock> keyLocks;
+    private final Locks<ReadWriteKeyLock> rwKeyLocks;
+    private final Locks<RowLock<?>> rowLocks;
 
     public LockGroup(String lockGroup) {
         this.name = lockGroup;
-        this.locksMap = new ConcurrentHashMap<>();
+        this.locks = new Locks<>();
+        this.atomicLocks = new Locks<>();
+        this.rwLocks = new Locks<>();
+        this.keyLocks = new Locks<>();
+        this.rwKeyLocks = new Locks<>();
+        this.rowLocks = new Locks<>();
     }
 
     public Lock lock(String lockName) {
-        if (!this.locksMap.containsKey(lockName)) {
-            this.locksMap.putIfAbsent(lockName, new ReentrantLock());
-        }
-        return (Lock) this.locksMap.get(lockName);
+        return get(this.locks, lockName, k -> new ReentrantLock());
     }
 
     public AtomicLock atomicLock(String lockName) {
-        if (!this.locksMap.containsKey(lockName)) {
-            this.locksMap.putIfAbsent(lockName, new AtomicLock(lockName));
-        }
-        return (AtomicLock) this.locksMap.get(lockName);
+        return get(this.atomicLocks, lockName, AtomicLock::new);
     }
 
     public ReadWriteLock readWriteLock(String lockName) {
-        if (!this.locksMap.containsKey(lockName)) {
-            this.locksMap.putIfAbsent(lockName, new ReentrantReadWriteLock());
-        }
-        return (ReadWriteLock) this.locksMap.get(lockName);
+        return get(this.rwLocks, lockName, k -> new ReentrantReadWriteLock());
     }
 
     public KeyLock keyLock(String lockName) {
-        if (!this.locksMap.containsKey(lockName)) {
-            this.locksMap.putIfAbsent(lockName, new KeyLock());
-        }
-        return (KeyLock) this.locksMap.get(lockName);
+        return get(this.keyLocks, lockName, k -> new KeyLock());
     }
 
     public KeyLock keyLock(String lockName, int size) {
-        if (!this.locksMap.containsKey(lockName)) {
-            this.locksMap.putIfAbsent(lockName, new KeyLock(size));
-        }
-        return (KeyLock) this.locksMap.get(lockName);
+        return get(this.keyLocks, lockName, k -> new KeyLock(size));
+    }
+
+    public ReadWriteKeyLock readWriteKeyLock(String lockName) {
+        return get(this.rwKeyLocks, lockName, k -> new ReadWriteKeyLock());
+    }
+
+    public ReadWriteKeyLock readWriteKeyLock(String lockName, int size) {
+        return get(this.rwKeyLocks, lockName, k -> new ReadWriteKeyLock(size));
     }
 
     public <K extends Comparable<K>> RowLock<K> rowLock(String lockName) {
-        if (!this.locksMap.containsKey(lockName)) {
-            this.locksMap.putIfAbsent(lockName, new RowLock<>());
-        }
-        Object value = this.locksMap.get(lockName);
+        RowLock<?> value = get(this.rowLocks, lockName, k -> new RowLock<>());
         @SuppressWarnings("unchecked")
         RowLock<K> lock = (RowLock<K>) value;
         return lock;
     }
 
+    /**
+     * Evict the locks which are not got since the last calling of this
+     * method and not in use(held or waited by any thread), and release the
+     * locks evicted by the last calling if they are still not in use, call
+     * it periodically to bound the count of named locks.
+     * @return The count of evicted locks
+     */
+    public int evictIdle() {
+        int count = 0;
+        count += evictIdle(this.locks, l -> {
+            return l.isLocked() || l.hasQueuedThreads();
+        });
+        count += evictIdle(this.atomicLocks, AtomicLock::inUse);
+        count += evictIdle(this.rwLocks, l -> {
+            return l.isWriteLocked() || l.getReadLockCount() > 0 ||
+                   l.hasQueuedThreads();
+        });
+        count += evictIdle(this.keyLocks, KeyLock::inUse);
+        count += evictIdle(this.rwKeyLocks, ReadWriteKeyLock::inUse);
+        count += evictIdle(this.rowLocks, RowLock::inUse);
+        return count;
+    }
+
+    /**
+     * @return The count of named locks of all kinds
+     */
+    public int size() {
+        return this.locks.entries.size() + this.atomicLocks.entries.size() +
+               this.rwLocks.entries.size() + this.keyLocks.entries.size() +
+               this.rwKeyLocks.entries.size() +
+               this.rowLocks.entries.size();
+    }
+
     public String name() {
         return this.name;
     }
+
+    private static <V> V get(Locks<V> locks, String name,
+                             Function<String, V> creator) {
+        while (true) {
+            Entry<V> entry = locks.entries.get(name);
+            if (entry == null) {
+                /*
+                 * Call get() before computeIfAbsent() since the latter of
+                 * jdk8 locks the bin even if the key is present
+                 */
+                entry = locks.entries.computeIfAbsent(name, k -> {
+                    // Reuse the evicted lock if it's not released yet
+                    V lock = locks.evicted.remove(k);
+                    return new Entry<>(lock != null ? lock : creator.apply(k));
+                });
+            }
+            if (entry.access()) {
+                return entry.lock;
+            }
+            // The entry is being evicted, help to remove it then retry
+            locks.entries.remove(name, entry);
+        }
+    }
+
+    private static <V> int evictIdle(Locks<V> locks, Predicate<V> inUse) {
+        // Release the locks evicted last time if they are still idle
+        for (Map.Entry<String, V> e : locks.evicted.entrySet()) {
+            if (!inUse.test(e.getValue())) {
+                locks.evicted.remove(e.getKey(), e.getValue());
+            }
+        }
+
+        int[] count = new int[1];
+        for (Map.Entry<String, Entry<V>> e : locks.entries.entrySet()) {
+            Entry<V> entry = e.getValue();
+            /*
+             * Move the lock to the evicted map in the bin lock of entries,
+             * so that a getter which sees the evicted entry must find the
+             * lock there after removing the entry
+             */
+            locks.entries.computeIfPresent(e.getKey(), (name, current) -> {
+                if (current != entry || !entry.evict(inUse)) {
+                    return current;
+                }
+                locks.evicted.put(name, entry.lock);
+                count[0]++;
+                return null;
+            });
+        }
+        return count[0];
+    }
+
+    private static final class Locks<V> {
+
+        private final Map<String, Entry<V>> entries;
+        // The evicted locks, which are released by the next evictIdle()
+        private final Map<String, V> evicted;
+
+        private Locks() {
+            this.entries = new ConcurrentHashMap<>();
+            this.evicted = new ConcurrentHashMap<>();
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private static final int ACCESSED = 0;
+        private static final int IDLE = 1;
+        private static final int EVICTED = 2;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Entry> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        private final V lock;
+        private volatile int state;
+
+        private Entry(V lock) {
+            this.lock = lock;
+            this.state = ACCESSED;
+        }
+
+        private boolean access() {
+            while (true) {
+                int state = this.state;
+                if (state == ACCESSED) {
+                    // Only read if accessed recently
+                    return true;
+                }
+                if (state == EVICTED) {
+                    return false;
+                }
+                if (STATE.compareAndSet(this, IDLE, ACCESSED)) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean evict(Predicate<V> inUse) {
+            int state = this.state;
+            if (state == ACCESSED) {
+                // Give a second chance, evict it next time if not accessed
+                STATE.compareAndSet(this, ACCESSED, IDLE);
+                return false;
+            }
+            if (state == IDLE && !inUse.test(this.lock)) {
+                return STATE.compareAndSet(this, IDLE, EVICTED);
+            }
+            return false;
+        }
+    }
 }
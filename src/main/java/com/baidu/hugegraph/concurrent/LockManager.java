@@ -21,9 +21,21 @@ package com.baidu.hugegraph.concurrent;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+
+import com.baidu.hugegraph.util.E;
+import com.baidu.hugegraph.util.Log;
 
 public class LockManager {
 
+    private static final Logger LOG = Log.logger(LockManager.class);
+
     private static final LockManager INSTANCE = new LockManager();
 
     public static LockManager instance() {
@@ -32,8 +44,13 @@ public class LockManager {
 
     private Map<String, LockGroup> lockGroupMap;
 
+    private ScheduledExecutorService deadlockChecker;
+    private volatile WaitGraph lastDeadlock;
+
     private LockManager() {
         this.lockGroupMap = new ConcurrentHashMap<>();
+        this.deadlockChecker = null;
+        this.lastDeadlock = null;
     }
 
     public boolean exists(String group) {
@@ -70,4 +87,62 @@ public class LockManager {
                       "LockGroup '%s' does not exists", group));
         }
     }
+
+    /**
+     * Get the snapshot of the threads waiting for locks
+     * @return The wait-for graph of threads
+     */
+    public WaitGraph waitGraph() {
+        return WaitGraph.snapshot();
+    }
+
+    /**
+     * Start a background checker to detect deadlocks periodically, the
+     * detected deadlocks are logged and can be got by lastDeadlock().
+     * NOTE: each check pauses the JVM at a safepoint to find deadlocked
+     * threads among all the locks of the JVM, so choose the interval as a
+     * sampling period, like seconds, rather than leaving a tight loop on.
+     * @param interval The interval in milliseconds to check
+     */
+    public synchronized void startDeadlockChecker(long interval) {
+        E.checkArgument(interval > 0L,
+                        "The interval must be > 0, but got %s", interval);
+        this.stopDeadlockChecker();
+        ThreadFactory factory = new BasicThreadFactory.Builder()
+                                    .namingPattern("lock-deadlock-checker")
+                                    .daemon(true)
+                                    .build();
+        this.deadlockChecker = Executors.newSingleThreadScheduledExecutor(
+                                         factory);
+        this.deadlockChecker.scheduleWithFixedDelay(this::checkDeadlock,
+                                                    interval, interval,
+                                                    TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopDeadlockChecker() {
+        if (this.deadlockChecker != null) {
+            this.deadlockChecker.shutdownNow();
+            this.deadlockChecker = null;
+        }
+    }
+
+    /**
+     * Get the wait-for graph of the last detected deadlock
+     * @return The graph of last deadlock, or null if no deadlock detected
+     */
+    public WaitGraph lastDeadlock() {
+        return this.lastDeadlock;
+    }
+
+    private void checkDeadlock() {
+        try {
+            WaitGraph graph = WaitGraph.deadlocks();
+            if (graph != null && graph.hasDeadlock()) {
+                this.lastDeadlock = graph;
+                LOG.error("Detected deadlock: {}", graph);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Failed to check deadlock", e);
+        }
+    }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.baidu.hugegraph.util.E;
+
+/**
+ * A work-stealing pool in async(FIFO) mode, only the latency of tasks
+ * submitted from outside by execute() or submit() is recorded.
+ */
+public class MetricsForkJoinPool extends ForkJoinPool
+                                 implements ExecutorMetrics {
+
+    private final LatencyRecorder latency = new LatencyRecorder();
+
+    public MetricsForkJoinPool(int parallelism, String namePattern) {
+        super(parallelism, threadFactory(namePattern), null, true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        E.checkNotNull(task, "task");
+        super.execute(this.latency.wrap(task));
+    }
+
+    @Override
+    public ForkJoinTask<?> submit(Runnable task) {
+        E.checkNotNull(task, "task");
+        return super.submit(this.latency.wrap(task));
+    }
+
+    @Override
+    public <T> ForkJoinTask<T> submit(Runnable task, T result) {
+        E.checkNotNull(task, "task");
+        return super.submit(this.latency.wrap(task), result);
+    }
+
+    @Override
+    public <T> ForkJoinTask<T> submit(Callable<T> task) {
+        E.checkNotNull(task, "task");
+        long submitTime = System.nanoTime();
+        return super.submit(() -> {
+            this.latency.record(System.nanoTime() - submitTime);
+            return task.call();
+        });
+    }
+
+    @Override
+    public int queueDepth() {
+        long count = super.getQueuedSubmissionCount() +
+                     super.getQueuedTaskCount();
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int activeThreads() {
+        return super.getActiveThreadCount();
+    }
+
+    @Override
+    public long averageLatency() {
+        return this.latency.average();
+    }
+
+    @Override
+    public long maxLatency() {
+        return this.latency.max();
+    }
+
+    private static ForkJoinWorkerThreadFactory threadFactory(
+                                               String namePattern) {
+        AtomicInteger count = new AtomicInteger();
+        return pool -> {
+            ForkJoinWorkerThread thread = defaultForkJoinWorkerThreadFactory
+                                          .newThread(pool);
+            thread.setName(String.format(namePattern,
+                                         count.incrementAndGet()));
+            return thread;
+        };
+    }
+}
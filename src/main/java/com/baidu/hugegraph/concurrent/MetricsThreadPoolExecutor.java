@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.baidu.hugegraph.concurrent.LatencyRecorder.TimedRunnable;
+
+public class MetricsThreadPoolExecutor extends ThreadPoolExecutor
+                                       implements ExecutorMetrics {
+
+    private final LatencyRecorder latency = new LatencyRecorder();
+
+    public MetricsThreadPoolExecutor(int coreSize, int maxSize,
+                                     long keepAliveTime,
+                                     BlockingQueue<Runnable> queue,
+                                     ThreadFactory factory,
+                                     RejectedExecutionHandler handler) {
+        super(coreSize, maxSize, keepAliveTime, TimeUnit.MILLISECONDS,
+              queue, factory, handler);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(command == null ? null : this.latency.wrap(command));
+    }
+
+    @Override
+    public boolean remove(Runnable task) {
+        for (Runnable queued : super.getQueue()) {
+            if (queued instanceof TimedRunnable &&
+                ((TimedRunnable) queued).task() == task) {
+                return super.remove(queued);
+            }
+        }
+        return super.remove(task);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        List<Runnable> results = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            if (task instanceof TimedRunnable) {
+                task = ((TimedRunnable) task).task();
+            }
+            results.add(task);
+        }
+        return results;
+    }
+
+    @Override
+    public int queueDepth() {
+        return super.getQueue().size();
+    }
+
+    @Override
+    public int activeThreads() {
+        return super.getActiveCount();
+    }
+
+    @Override
+    public long averageLatency() {
+        return this.latency.average();
+    }
+
+    @Override
+    public long maxLatency() {
+        return this.latency.max();
+    }
+}
@@ -19,49 +19,166 @@
 
 package com.baidu.hugegraph.concurrent;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 
+import com.baidu.hugegraph.util.E;
 import com.baidu.hugegraph.util.Log;
 
-public class PausableScheduledThreadPool extends ScheduledThreadPoolExecutor {
+/**
+ * A scheduled thread pool which can be paused, the tasks that become due
+ * while paused are held out of the work queue instead of blocking the
+ * workers, and will be put back to the queue in order of priority once
+ * resumed. Wrap a task with PriorityTask to set its priority or deadline:
+ * the HIGH priority tasks are never held, and a task with deadline is held
+ * at most deadline milliseconds.
+ */
+public class PausableScheduledThreadPool extends ScheduledThreadPoolExecutor
+                                         implements ExecutorMetrics {
 
     private static final Logger LOG = Log.logger(
                                       PausableScheduledThreadPool.class);
 
+    private static final Comparator<PausableTask<?>> RELEASE_ORDER =
+            Comparator.<PausableTask<?>, Priority>comparing(t -> t.priority)
+                      .reversed()
+                      .thenComparingLong(t -> t.heldSince);
+
     private volatile boolean paused = false;
 
+    // Guarded by itself, also guards the pause state
+    private final List<PausableTask<?>> heldTasks = new ArrayList<>();
+
+    private long pauseStart = 0L;
+    private long pausedTime = 0L;
+    private long pauseCount = 0L;
+
+    private final LatencyRecorder latency = new LatencyRecorder();
+
     public PausableScheduledThreadPool(int corePoolSize,
                                        ThreadFactory factory) {
         super(corePoolSize, factory);
     }
 
-    public synchronized void pauseSchedule() {
-        this.paused = true;
+    public void pauseSchedule() {
+        synchronized (this.heldTasks) {
+            if (this.paused) {
+                return;
+            }
+            this.paused = true;
+            this.pauseStart = System.nanoTime();
+            this.pauseCount++;
+        }
         LOG.info("PausableScheduledThreadPool was paused");
     }
 
-    public synchronized void resumeSchedule() {
-        this.paused = false;
-        this.notifyAll();
-        LOG.info("PausableScheduledThreadPool was resumed");
+    public void resumeSchedule() {
+        int count;
+        synchronized (this.heldTasks) {
+            if (!this.paused) {
+                return;
+            }
+            this.paused = false;
+            long now = System.nanoTime();
+            this.pausedTime += now - this.pauseStart;
+            count = this.releaseHeldTasks(now);
+        }
+        LOG.info("PausableScheduledThreadPool was resumed, released {} " +
+                 "held tasks", count);
+    }
+
+    public boolean paused() {
+        return this.paused;
     }
 
+    /**
+     * @return The count of tasks in the work queue or held by pausing
+     */
     @Override
-    protected void beforeExecute(Thread t, Runnable r) {
-        synchronized (this) {
-            while (this.paused) {
-                try {
-                    this.wait();
-                } catch (InterruptedException e) {
-                    LOG.warn("PausableScheduledThreadPool was interrupted");
+    public int queueDepth() {
+        int held = 0;
+        synchronized (this.heldTasks) {
+            for (PausableTask<?> task : this.heldTasks) {
+                // The held tasks with deadline are still in the work queue
+                if (task.deadline == 0L) {
+                    held++;
                 }
             }
         }
-        super.beforeExecute(t, r);
+        return super.getQueue().size() + held;
+    }
+
+    /**
+     * @return The count of due tasks held by pausing
+     */
+    public int heldTasks() {
+        synchronized (this.heldTasks) {
+            return this.heldTasks.size();
+        }
+    }
+
+    @Override
+    public int activeThreads() {
+        return super.getActiveCount();
+    }
+
+    @Override
+    public long averageLatency() {
+        return this.latency.average();
+    }
+
+    @Override
+    public long maxLatency() {
+        return this.latency.max();
+    }
+
+    /**
+     * @return The total paused time in milliseconds, including the
+     *         current pause if paused
+     */
+    public long pausedTime() {
+        synchronized (this.heldTasks) {
+            long time = this.pausedTime;
+            if (this.paused) {
+                time += System.nanoTime() - this.pauseStart;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(time);
+        }
+    }
+
+    public long pauseCount() {
+        synchronized (this.heldTasks) {
+            return this.pauseCount;
+        }
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(
+                  Runnable runnable, RunnableScheduledFuture<V> task) {
+        if (runnable instanceof PriorityTask) {
+            PriorityTask priorityTask = (PriorityTask) runnable;
+            return new PausableTask<>(task, priorityTask.priority,
+                                      priorityTask.deadline);
+        }
+        return new PausableTask<>(task, Priority.NORMAL, 0L);
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(
+                  Callable<V> callable, RunnableScheduledFuture<V> task) {
+        return new PausableTask<>(task, Priority.NORMAL, 0L);
     }
 
     @Override
@@ -79,4 +196,191 @@ public class PausableScheduledThreadPool extends ScheduledThreadPoolExecutor {
         }
         return super.shutdownNow();
     }
+
+    private boolean hold(PausableTask<?> task, long now) {
+        synchronized (this.heldTasks) {
+            if (!this.paused) {
+                return false;
+            }
+            if (task.heldSince == 0L) {
+                task.heldSince = now;
+            }
+            this.heldTasks.add(task);
+            if (task.deadline > 0L) {
+                // Let the task run at deadline even if still paused
+                task.releaseTime = task.heldSince + task.deadline;
+                super.getQueue().add(task);
+            }
+            return true;
+        }
+    }
+
+    private void unhold(PausableTask<?> task) {
+        synchronized (this.heldTasks) {
+            this.heldTasks.remove(task);
+        }
+    }
+
+    private int releaseHeldTasks(long now) {
+        assert Thread.holdsLock(this.heldTasks);
+        this.heldTasks.sort(RELEASE_ORDER);
+        BlockingQueue<Runnable> queue = super.getQueue();
+        int count = 0;
+        for (PausableTask<?> task : this.heldTasks) {
+            if (task.deadline > 0L && !queue.remove(task)) {
+                // It's being run by a worker at the deadline
+                continue;
+            }
+            // Keep the release order by the release time
+            task.releaseTime = now + count++;
+            queue.add(task);
+        }
+        this.heldTasks.clear();
+        return count;
+    }
+
+    public enum Priority {
+        LOW,
+        NORMAL,
+        HIGH
+    }
+
+    /**
+     * A task with priority and deadline, pass it to the schedule methods.
+     */
+    public static final class PriorityTask implements Runnable {
+
+        private final Runnable task;
+        private final Priority priority;
+        private final long deadline;
+
+        public PriorityTask(Runnable task, Priority priority) {
+            this(task, priority, 0L);
+        }
+
+        /**
+         * @param deadline: the max time in milliseconds the task can be
+         *                  held while paused, 0 means no limit
+         */
+        public PriorityTask(Runnable task, Priority priority, long deadline) {
+            E.checkArgumentNotNull(task, "The task can't be null");
+            E.checkArgumentNotNull(priority, "The priority can't be null");
+            E.checkArgument(deadline >= 0L,
+                            "The deadline must be >= 0, but got %s",
+                            deadline);
+            this.task = task;
+            this.priority = priority;
+            this.deadline = TimeUnit.MILLISECONDS.toNanos(deadline);
+        }
+
+        public Priority priority() {
+            return this.priority;
+        }
+
+        @Override
+        public void run() {
+            this.task.run();
+        }
+    }
+
+    private final class PausableTask<V> implements RunnableScheduledFuture<V> {
+
+        private final RunnableScheduledFuture<V> task;
+        private final Priority priority;
+        private final long deadline;
+
+        // Updated only when the task is out of the work queue
+        private volatile long heldSince;
+        private volatile long releaseTime;
+
+        public PausableTask(RunnableScheduledFuture<V> task,
+                            Priority priority, long deadline) {
+            this.task = task;
+            this.priority = priority;
+            this.deadline = deadline;
+            this.heldSince = 0L;
+            this.releaseTime = 0L;
+        }
+
+        @Override
+        public void run() {
+            PausableScheduledThreadPool pool =
+                                        PausableScheduledThreadPool.this;
+            long now = System.nanoTime();
+            if (pool.paused && this.holdable(now) && pool.hold(this, now)) {
+                return;
+            }
+            if (this.heldSince != 0L) {
+                pool.unhold(this);
+                this.heldSince = 0L;
+            }
+            this.releaseTime = 0L;
+            pool.latency.record(-this.task.getDelay(TimeUnit.NANOSECONDS));
+            this.task.run();
+        }
+
+        private boolean holdable(long now) {
+            if (this.priority == Priority.HIGH) {
+                return false;
+            }
+            return this.deadline == 0L || this.heldSince == 0L ||
+                   now - this.heldSince < this.deadline;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return this.task.isPeriodic();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            if (this.releaseTime != 0L) {
+                return unit.convert(this.releaseTime - System.nanoTime(),
+                                    TimeUnit.NANOSECONDS);
+            }
+            return this.task.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            if (other instanceof PausableTask &&
+                this.releaseTime == 0L &&
+                ((PausableTask<?>) other).releaseTime == 0L) {
+                return this.task.compareTo(((PausableTask<?>) other).task);
+            }
+            long diff = this.getDelay(TimeUnit.NANOSECONDS) -
+                        other.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0L ? -1 : (diff > 0L ? 1 : 0);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return this.task.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.task.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return this.task.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit)
+                     throws InterruptedException, ExecutionException,
+                            TimeoutException {
+            return this.task.get(timeout, unit);
+        }
+    }
 }
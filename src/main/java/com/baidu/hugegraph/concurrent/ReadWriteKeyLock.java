@@ -0,0 +1,415 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import com.baidu.hugegraph.util.E;
+
+/**
+ * ReadWriteKeyLock provide an interface of segment read-write lock,
+ * the readers of the same segment(stripe) can run concurrently.
+ *
+ * Both read lock and write lock are reentrant, and a stripe also supports
+ * optimistic reading like StampedLock, see tryOptimisticRead(key).
+ */
+public class ReadWriteKeyLock {
+
+    private final Stripe[] stripes;
+
+    public ReadWriteKeyLock() {
+        // The default size is availableProcessors() * 4
+        this(Runtime.getRuntime().availableProcessors() << 2);
+    }
+
+    public ReadWriteKeyLock(int size) {
+        E.checkArgument(size > 0,
+                        "The size of ReadWriteKeyLock must be > 0, " +
+                        "but got %s", size);
+        this.stripes = new Stripe[KeyLock.ceilToPowerOfTwo(size)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Lock an object for reading
+     * @param key The object to lock
+     * @return The read lock(locked) of passed key
+     */
+    public final Lock readLock(Object key) {
+        E.checkArgument(key != null, "Lock key can't be null");
+        Lock lock = this.stripe(key).readLock;
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Unlock an object locked for reading
+     * @param key The object to unlock
+     */
+    public final void unlockRead(Object key) {
+        E.checkArgument(key != null, "Unlock key can't be null");
+        this.stripe(key).readLock.unlock();
+    }
+
+    /**
+     * Lock an object for writing
+     * @param key The object to lock
+     * @return The write lock(locked) of passed key
+     */
+    public final Lock writeLock(Object key) {
+        E.checkArgument(key != null, "Lock key can't be null");
+        Lock lock = this.stripe(key).writeLock;
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Unlock an object locked for writing
+     * @param key The object to unlock
+     */
+    public final void unlockWrite(Object key) {
+        E.checkArgument(key != null, "Unlock key can't be null");
+        this.stripe(key).writeLock.unlock();
+    }
+
+    /**
+     * Try to lock an object for reading in the specified time
+     * @param key       The object to lock
+     * @param timeout   The max time in milliseconds to wait
+     * @return true if locked, false if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public final boolean tryReadLock(Object key, long timeout)
+                                     throws InterruptedException {
+        E.checkArgument(key != null, "Lock key can't be null");
+        long deadline = KeyLock.deadline(timeout);
+        return tryLock(this.stripe(key).readLock, deadline);
+    }
+
+    /**
+     * Try to lock an object for writing in the specified time
+     * @param key       The object to lock
+     * @param timeout   The max time in milliseconds to wait
+     * @return true if locked, false if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public final boolean tryWriteLock(Object key, long timeout)
+                                      throws InterruptedException {
+        E.checkArgument(key != null, "Lock key can't be null");
+        long deadline = KeyLock.deadline(timeout);
+        return tryLock(this.stripe(key).writeLock, deadline);
+    }
+
+    /**
+     * Get a stamp for optimistic reading of an object, the stamp must be
+     * validated by validate(key, stamp) after reading.
+     * @param key The object to read
+     * @return A non-zero stamp, or zero if the object is locked for writing
+     */
+    public final long tryOptimisticRead(Object key) {
+        E.checkArgument(key != null, "Lock key can't be null");
+        return this.stripe(key).sequence.tryOptimisticRead();
+    }
+
+    /**
+     * Check whether the object has not been locked for writing since the
+     * stamp was got by tryOptimisticRead(key)
+     * @param key   The object to read
+     * @param stamp The stamp got by tryOptimisticRead(key)
+     * @return true if no writing happened since the stamp got
+     */
+    public final boolean validate(Object key, long stamp) {
+        E.checkArgument(key != null, "Lock key can't be null");
+        return this.stripe(key).sequence.validate(stamp);
+    }
+
+    /**
+     * Read an object optimistically, then read with the read lock held if
+     * the object was locked for writing during reading
+     * NOTE: the reader may see inconsistent state in the optimistic
+     * reading, it should not have side effects.
+     * @param key    The object to read
+     * @param reader The function to read the object
+     * @return The result of reader
+     */
+    public final <V> V optimisticRead(Object key, Supplier<V> reader) {
+        E.checkArgument(key != null, "Lock key can't be null");
+        Stripe stripe = this.stripe(key);
+        long stamp = stripe.sequence.tryOptimisticRead();
+        if (stamp != 0L) {
+            V result = reader.get();
+            if (stripe.sequence.validate(stamp)) {
+                return result;
+            }
+        }
+        stripe.readLock.lock();
+        try {
+            return reader.get();
+        } finally {
+            stripe.readLock.unlock();
+        }
+    }
+
+    /**
+     * Lock a list of object for reading with sorted order, the same stripe
+     * of keys will be locked only once
+     * @param keys The objects to lock
+     * @return The read locks(locked) of keys
+     */
+    public final List<Lock> readLockAll(Object... keys) {
+        return this.lockAll(false, keys);
+    }
+
+    /**
+     * Lock a list of object for writing with sorted order, the same stripe
+     * of keys will be locked only once
+     * @param keys The objects to lock
+     * @return The write locks(locked) of keys
+     */
+    public final List<Lock> writeLockAll(Object... keys) {
+        return this.lockAll(true, keys);
+    }
+
+    /**
+     * Try to lock a collection of object for reading with sorted order in
+     * the specified time, either all or none of the objects are locked
+     * @param keys      The objects to lock
+     * @param timeout   The max time in milliseconds to wait for all locks
+     * @return The read locks(locked) of keys, or null if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public final List<Lock> tryReadLockAll(Collection<?> keys, long timeout)
+                                           throws InterruptedException {
+        return this.tryLockAll(false, keys, timeout);
+    }
+
+    /**
+     * Try to lock a collection of object for writing with sorted order in
+     * the specified time, either all or none of the objects are locked
+     * @param keys      The objects to lock
+     * @param timeout   The max time in milliseconds to wait for all locks
+     * @return The write locks(locked) of keys, or null if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public final List<Lock> tryWriteLockAll(Collection<?> keys, long timeout)
+                                            throws InterruptedException {
+        return this.tryLockAll(true, keys, timeout);
+    }
+
+    /**
+     * Unlock a list of object
+     * @param locks The locks to unlock
+     */
+    public final void unlockAll(List<Lock> locks) {
+        E.checkArgument(locks != null, "Unlock locks can't be null");
+        for (int i = locks.size(); i > 0; i--) {
+            locks.get(i - 1).unlock();
+        }
+    }
+
+    /**
+     * Get the stripes count
+     * @return The stripes count
+     */
+    public int size() {
+        return this.stripes.length;
+    }
+
+    boolean inUse() {
+        for (Stripe stripe : this.stripes) {
+            ReentrantReadWriteLock lock = stripe.lock;
+            if (lock.isWriteLocked() || lock.getReadLockCount() > 0 ||
+                lock.hasQueuedThreads()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Lock> lockAll(boolean write, Object... keys) {
+        E.checkArgument(keys != null && keys.length > 0,
+                        "Lock keys can't be null or empty");
+        int[] indexes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            E.checkArgument(keys[i] != null, "Lock key can't be null");
+            indexes[i] = this.indexOf(keys[i]);
+        }
+        int size = KeyLock.sortAndDistinct(indexes, keys.length);
+        List<Lock> locks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Stripe stripe = this.stripes[indexes[i]];
+            Lock lock = write ? stripe.writeLock : stripe.readLock;
+            lock.lock();
+            locks.add(lock);
+        }
+        return Collections.unmodifiableList(locks);
+    }
+
+    private List<Lock> tryLockAll(boolean write, Collection<?> keys,
+                                  long timeout)
+                                  throws InterruptedException {
+        E.checkArgument(keys != null && keys.size() > 0,
+                        "Lock keys can't be null or empty");
+        long deadline = KeyLock.deadline(timeout);
+        int[] indexes = new int[keys.size()];
+        int i = 0;
+        for (Object key : keys) {
+            E.checkArgument(key != null, "Lock key can't be null");
+            indexes[i++] = this.indexOf(key);
+        }
+        int size = KeyLock.sortAndDistinct(indexes, i);
+        List<Lock> locks = new ArrayList<>(size);
+        try {
+            for (i = 0; i < size; i++) {
+                Stripe stripe = this.stripes[indexes[i]];
+                Lock lock = write ? stripe.writeLock : stripe.readLock;
+                if (!tryLock(lock, deadline)) {
+                    return null;
+                }
+                locks.add(lock);
+            }
+        } finally {
+            if (locks.size() < size) {
+                // Release the acquired locks in reverse order
+                this.unlockAll(locks);
+            }
+        }
+        return Collections.unmodifiableList(locks);
+    }
+
+    private static boolean tryLock(Lock lock, long deadline)
+                                   throws InterruptedException {
+        if (lock.tryLock()) {
+            return true;
+        }
+        long timeout = deadline - System.nanoTime();
+        return lock.tryLock(timeout, TimeUnit.NANOSECONDS);
+    }
+
+    private int indexOf(Object key) {
+        return KeyLock.smear(key) & (this.stripes.length - 1);
+    }
+
+    private Stripe stripe(Object key) {
+        return this.stripes[this.indexOf(key)];
+    }
+
+    private static final class Stripe {
+
+        private final ReentrantReadWriteLock lock;
+        /*
+         * The sequence is held in write mode while the stripe is locked for
+         * writing, it's never contended since the writer is exclusive, and
+         * it's only used to serve the optimistic reading.
+         */
+        private final StampedLock sequence;
+        private final Lock readLock;
+        private final Lock writeLock;
+
+        // Only accessed by the writer
+        private long writeStamp;
+
+        private Stripe() {
+            this.lock = new ReentrantReadWriteLock();
+            this.sequence = new StampedLock();
+            this.readLock = this.lock.readLock();
+            this.writeLock = new WriteLock(this);
+            this.writeStamp = 0L;
+        }
+
+        private void afterWriteLocked() {
+            if (this.lock.getWriteHoldCount() == 1) {
+                this.writeStamp = this.sequence.writeLock();
+            }
+        }
+
+        private void beforeWriteUnlock() {
+            if (this.lock.getWriteHoldCount() == 1) {
+                this.sequence.unlockWrite(this.writeStamp);
+            }
+        }
+    }
+
+    private static final class WriteLock implements Lock {
+
+        private final Stripe stripe;
+        private final Lock lock;
+
+        private WriteLock(Stripe stripe) {
+            this.stripe = stripe;
+            this.lock = stripe.lock.writeLock();
+        }
+
+        @Override
+        public void lock() {
+            this.lock.lock();
+            this.stripe.afterWriteLocked();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            this.lock.lockInterruptibly();
+            this.stripe.afterWriteLocked();
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (this.lock.tryLock()) {
+                this.stripe.afterWriteLocked();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit)
+                               throws InterruptedException {
+            if (this.lock.tryLock(time, unit)) {
+                this.stripe.afterWriteLocked();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void unlock() {
+            this.stripe.beforeWriteUnlock();
+            this.lock.unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            // The waiting would release the lock without ending the sequence
+            throw new UnsupportedOperationException(
+                      "Condition is not supported by ReadWriteKeyLock");
+        }
+    }
+}
@@ -21,52 +21,77 @@ package com.baidu.hugegraph.concurrent;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 
 import com.baidu.hugegraph.util.E;
 
+/**
+ * RowLock provide an interface of reentrant lock for each key(row)
+ *
+ * A lock node is mapped to a key when it's locked, and removed from the
+ * map then recycled when the key is unlocked by the final holder and no
+ * thread is waiting for it. The reentrant count is recorded in the node
+ * by the holder thread.
+ */
 public class RowLock<K extends Comparable<K>> {
 
-    private final Map<K, Lock> locks = new ConcurrentHashMap<>();
-    private final ThreadLocal<Map<K, LocalLock>> localLocks =
-                  ThreadLocal.withInitial(HashMap::new);
+    // The max count of the recycled nodes
+    private static final int POOL_SIZE = 64;
+    private static final int POOL_PROBES = 4;
+
+    private final ConcurrentHashMap<K, Node<K>> locks;
+    private final AtomicReferenceArray<Node<K>> pool;
+
+    public RowLock() {
+        this.locks = new ConcurrentHashMap<>();
+        this.pool = new AtomicReferenceArray<>(POOL_SIZE);
+    }
 
     public void lock(K key) {
         E.checkArgument(key != null, "Lock key can't be null");
-        LocalLock localLock = this.localLocks.get().get(key);
-        if (localLock != null) {
-            localLock.lockCount++;
-        } else {
-            Lock current = new ReentrantLock();
-            Lock previous = this.locks.putIfAbsent(key, current);
-            if (previous != null) {
-                current = previous;
+        Thread current = Thread.currentThread();
+        while (true) {
+            Node<K> node = this.locks.get(key);
+            if (node == null) {
+                if (this.lockNew(key, current)) {
+                    return;
+                }
+                continue;
             }
-            current.lock();
-            this.localLocks.get().put(key, new LocalLock(current));
+            if (node.owner() == current) {
+                node.holds++;
+                return;
+            }
+            if (!this.retain(key, node)) {
+                continue;
+            }
+            node.acquire(1);
+            node.holds = 1;
+            return;
         }
     }
 
+    public boolean tryLock(K key, long timeout) throws InterruptedException {
+        E.checkArgument(key != null, "Lock key can't be null");
+        return this.tryLockUntil(key, KeyLock.deadline(timeout));
+    }
+
     public void unlock(K key) {
         E.checkArgument(key != null, "Unlock key can't be null");
-        LocalLock localLock = this.localLocks.get().get(key);
-        if (localLock == null) {
+        Node<K> node = this.locks.get(key);
+        if (node == null || node.owner() != Thread.currentThread()) {
             return;
         }
-        if (--localLock.lockCount == 0) {
-            this.locks.remove(key, localLock.current);
-            this.localLocks.get().remove(key);
-            localLock.current.unlock();
+        E.checkState(node.holds > 0,
+                     "The lock count must be > 0, but got %s", node.holds);
+        if (--node.holds == 0) {
+            this.unlock(node);
         }
-        E.checkState(localLock.lockCount >= 0,
-                     "The lock count must be >= 0, but got %s",
-                     localLock.lockCount);
     }
 
     public void lockAll(Set<K> keys) {
@@ -79,6 +104,31 @@ public class RowLock<K extends Comparable<K>> {
         }
     }
 
+    public boolean tryLockAll(Set<K> keys, long timeout)
+                              throws InterruptedException {
+        E.checkArgument(keys != null && keys.size() > 0,
+                        "Lock keys can't be null or empty");
+        long deadline = KeyLock.deadline(timeout);
+        List<K> list = new ArrayList<>(keys);
+        Collections.sort(list);
+        int locked = 0;
+        try {
+            for (; locked < list.size(); locked++) {
+                if (!this.tryLockUntil(list.get(locked), deadline)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            // Release the acquired locks in reverse order if not all locked
+            if (locked < list.size()) {
+                for (int i = locked; i > 0; i--) {
+                    this.unlock(list.get(i - 1));
+                }
+            }
+        }
+    }
+
     public void unlockAll(Set<K> keys) {
         E.checkArgument(keys != null && keys.size() > 0,
                         "Unlock keys can't be null or empty");
@@ -87,14 +137,173 @@ public class RowLock<K extends Comparable<K>> {
         }
     }
 
-    private static class LocalLock {
+    boolean inUse() {
+        return !this.locks.isEmpty();
+    }
+
+    private boolean tryLockUntil(K key, long deadline)
+                                 throws InterruptedException {
+        E.checkArgument(key != null, "Lock key can't be null");
+        Thread current = Thread.currentThread();
+        while (true) {
+            Node<K> node = this.locks.get(key);
+            if (node == null) {
+                if (this.lockNew(key, current)) {
+                    return true;
+                }
+                continue;
+            }
+            if (node.owner() == current) {
+                node.holds++;
+                return true;
+            }
+            if (!this.retain(key, node)) {
+                continue;
+            }
+            boolean acquired = false;
+            try {
+                long timeout = deadline - System.nanoTime();
+                acquired = node.tryAcquireNanos(1, timeout);
+            } finally {
+                if (!acquired) {
+                    this.release(node);
+                }
+            }
+            if (acquired) {
+                node.holds = 1;
+            }
+            return acquired;
+        }
+    }
+
+    private boolean lockNew(K key, Thread current) {
+        Node<K> node = this.obtain();
+        node.init(key, current);
+        if (this.locks.putIfAbsent(key, node) == null) {
+            return true;
+        }
+        // Other thread has locked the key, lock with the mapped node
+        this.unlock(node);
+        return false;
+    }
+
+    private boolean retain(K key, Node<K> node) {
+        if (!node.retain()) {
+            // The node is being recycled
+            return false;
+        }
+        if (this.locks.get(key) != node) {
+            // The node has been recycled and reused by another key
+            this.release(node);
+            return false;
+        }
+        return true;
+    }
+
+    private void unlock(Node<K> node) {
+        node.release(1);
+        this.release(node);
+    }
+
+    private void release(Node<K> node) {
+        if (node.deref()) {
+            // No thread is holding or waiting for the node, recycle it
+            this.locks.remove(node.key, node);
+            node.key = null;
+            this.recycle(node);
+        }
+    }
+
+    private Node<K> obtain() {
+        int index = probe();
+        for (int i = 0; i < POOL_PROBES; i++, index++) {
+            int slot = index & (POOL_SIZE - 1);
+            Node<K> node = this.pool.get(slot);
+            if (node != null && this.pool.compareAndSet(slot, node, null)) {
+                return node;
+            }
+        }
+        return new Node<>();
+    }
+
+    private void recycle(Node<K> node) {
+        int index = probe();
+        for (int i = 0; i < POOL_PROBES; i++, index++) {
+            int slot = index & (POOL_SIZE - 1);
+            if (this.pool.get(slot) == null &&
+                this.pool.compareAndSet(slot, null, node)) {
+                return;
+            }
+        }
+        // Drop the node if the pool is full
+    }
+
+    private static int probe() {
+        return (int) Thread.currentThread().getId();
+    }
+
+    private static final class Node<K> extends AbstractQueuedSynchronizer {
+
+        private static final long serialVersionUID = 7264716263476478513L;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Node> REFS =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "refs");
+
+        private K key;
+        // The reentrant count, only accessed by the holder thread
+        private int holds;
+        // The count of the holder thread and waiting threads
+        private volatile int refs;
+
+        private Node() {
+            this.key = null;
+            this.holds = 0;
+            this.refs = 0;
+        }
+
+        private void init(K key, Thread owner) {
+            this.key = key;
+            this.holds = 1;
+            this.setState(1);
+            this.setExclusiveOwnerThread(owner);
+            // Publish the node by the volatile write at last
+            this.refs = 1;
+        }
 
-        private final Lock current;
-        private int lockCount;
+        private Thread owner() {
+            return this.getExclusiveOwnerThread();
+        }
+
+        private boolean retain() {
+            int refs;
+            do {
+                refs = this.refs;
+                if (refs == 0) {
+                    return false;
+                }
+            } while (!REFS.compareAndSet(this, refs, refs + 1));
+            return true;
+        }
+
+        private boolean deref() {
+            return REFS.decrementAndGet(this) == 0;
+        }
+
+        @Override
+        protected boolean tryAcquire(int acquires) {
+            if (this.compareAndSetState(0, 1)) {
+                this.setExclusiveOwnerThread(Thread.currentThread());
+                return true;
+            }
+            return false;
+        }
 
-        private LocalLock(Lock current) {
-            this.current = current;
-            this.lockCount = 1;
+        @Override
+        protected boolean tryRelease(int releases) {
+            this.setExclusiveOwnerThread(null);
+            this.setState(0);
+            return true;
         }
     }
 }
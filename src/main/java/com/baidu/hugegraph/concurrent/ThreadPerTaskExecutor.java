@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.concurrent;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.baidu.hugegraph.util.E;
+
+/**
+ * Record the metrics of an executor which starts a thread for each task,
+ * like the virtual thread executor.
+ */
+public class ThreadPerTaskExecutor extends AbstractExecutorService
+                                   implements ExecutorMetrics {
+
+    private final ExecutorService executor;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LatencyRecorder latency = new LatencyRecorder();
+
+    public ThreadPerTaskExecutor(ExecutorService executor) {
+        E.checkNotNull(executor, "executor");
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        E.checkNotNull(task, "task");
+        long submitTime = System.nanoTime();
+        this.pending.incrementAndGet();
+        try {
+            this.executor.execute(() -> {
+                this.latency.record(System.nanoTime() - submitTime);
+                this.pending.decrementAndGet();
+                this.active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    this.active.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            this.pending.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return this.executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+                                    throws InterruptedException {
+        return this.executor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public int queueDepth() {
+        return this.pending.get();
+    }
+
+    @Override
+    public int activeThreads() {
+        return this.active.get();
+    }
+
+    @Override
+    public long averageLatency() {
+        return this.latency.average();
+    }
+
+    @Override
+    public long maxLatency() {
+        return this.latency.max();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.concurrent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * WaitGraph is a snapshot of which threads are waiting for the locks held
+ * by which threads, the cycles of the graph are deadlocks.
+ *
+ * The edges are collected from the JVM which tracks the owner of monitors
+ * and ownable synchronizers, that's all the locks handed out by LockGroup
+ * except read locks and AtomicLock, which have no owner or never block.
+ * So there is no extra cost on the locking path, but the JVM is paused at
+ * a safepoint to collect them, and the locks outside LockGroup are also
+ * included. snapshot() dumps all the threads, deadlocks() only dumps the
+ * deadlocked threads if any, which is the one to call periodically.
+ */
+public final class WaitGraph {
+
+    private final List<Edge> edges;
+    private final List<List<Edge>> cycles;
+
+    private WaitGraph(List<Edge> edges) {
+        this.edges = Collections.unmodifiableList(edges);
+        this.cycles = Collections.unmodifiableList(findCycles(edges));
+    }
+
+    /**
+     * Collect the wait-for graph of all the threads
+     */
+    public static WaitGraph snapshot() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return build(bean.dumpAllThreads(false, false));
+    }
+
+    /**
+     * Collect the wait-for graph of the deadlocked threads
+     * @return The graph, or null if there is no deadlock
+     */
+    public static WaitGraph deadlocks() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        long[] threads = bean.findDeadlockedThreads();
+        if (threads == null) {
+            return null;
+        }
+        return build(bean.getThreadInfo(threads));
+    }
+
+    private static WaitGraph build(ThreadInfo[] infos) {
+        List<Edge> edges = new ArrayList<>();
+        for (ThreadInfo info : infos) {
+            if (info == null || info.getLockOwnerId() == -1L ||
+                info.getLockInfo() == null) {
+                continue;
+            }
+            edges.add(new Edge(info.getThreadId(), info.getThreadName(),
+                               info.getLockOwnerId(), info.getLockOwnerName(),
+                               info.getLockInfo().toString()));
+        }
+        return new WaitGraph(edges);
+    }
+
+    /**
+     * @return The edges from waiting threads to the lock owner threads
+     */
+    public List<Edge> edges() {
+        return this.edges;
+    }
+
+    /**
+     * @return The deadlocks, each of which is a cycle of edges
+     */
+    public List<List<Edge>> cycles() {
+        return this.cycles;
+    }
+
+    public boolean hasDeadlock() {
+        return !this.cycles.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("WaitGraph{edges=").append(this.edges.size());
+        sb.append(",deadlocks=").append(this.cycles.size()).append("}");
+        for (int i = 0; i < this.cycles.size(); i++) {
+            sb.append("\n  deadlock-").append(i).append(":");
+            for (Edge edge : this.cycles.get(i)) {
+                sb.append("\n    ").append(edge);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<List<Edge>> findCycles(List<Edge> edges) {
+        // Each thread waits for at most one lock, so follow the out-edges
+        Map<Long, Edge> waits = new HashMap<>();
+        for (Edge edge : edges) {
+            waits.put(edge.waiterId, edge);
+        }
+
+        List<List<Edge>> cycles = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        for (Edge start : edges) {
+            if (visited.contains(start.waiterId)) {
+                continue;
+            }
+            List<Edge> path = new ArrayList<>();
+            Map<Long, Integer> positions = new HashMap<>();
+            Edge edge = start;
+            while (edge != null && !visited.contains(edge.waiterId)) {
+                visited.add(edge.waiterId);
+                positions.put(edge.waiterId, path.size());
+                path.add(edge);
+                edge = waits.get(edge.ownerId);
+            }
+            if (edge != null && positions.containsKey(edge.waiterId)) {
+                // Back to a thread of the current path
+                int from = positions.get(edge.waiterId);
+                cycles.add(Collections.unmodifiableList(
+                           new ArrayList<>(path.subList(from, path.size()))));
+            }
+        }
+        return cycles;
+    }
+
+    public static final class Edge {
+
+        private final long waiterId;
+        private final String waiter;
+        private final long ownerId;
+        private final String owner;
+        private final String lock;
+
+        private Edge(long waiterId, String waiter,
+                     long ownerId, String owner, String lock) {
+            this.waiterId = waiterId;
+            this.waiter = waiter;
+            this.ownerId = ownerId;
+            this.owner = owner;
+            this.lock = lock;
+        }
+
+        public long waiterId() {
+            return this.waiterId;
+        }
+
+        public String waiter() {
+            return this.waiter;
+        }
+
+        public long ownerId() {
+            return this.ownerId;
+        }
+
+        public String owner() {
+            return this.owner;
+        }
+
+        /**
+         * @return The description of the lock, like "class@identity"
+         */
+        public String lock() {
+            return this.lock;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("'%s'(%s) waits for %s held by '%s'(%s)",
+                                 this.waiter, this.waiterId, this.lock,
+                                 this.owner, this.ownerId);
+        }
+    }
+}
@@ -19,20 +19,38 @@
 
 package com.baidu.hugegraph.iterator;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 
 import com.baidu.hugegraph.util.E;
 import com.baidu.hugegraph.util.InsertionOrderUtil;
 import com.google.common.collect.ImmutableList;
 
+/**
+ * Map the origin elements batch by batch. If an executor is specified, the
+ * mapper of the next `prefetch` batches is submitted to it while the
+ * results of the current batch are consumed, and the origin iterator is
+ * still only accessed by the consumer thread. A batch rejected by the
+ * executor is mapped in the consumer thread, and an IllegalStateException
+ * is thrown if the executor is terminated before the submitted batches
+ * are mapped.
+ */
 public class BatchMapperIterator<T, R> extends WrappedIterator<R> {
 
     private final int batch;
     private final Iterator<T> originIterator;
     private final Function<List<T>, Iterator<R>> mapperCallback;
 
+    private final ExecutorService executor;
+    private final int prefetch;
+    private final Deque<MapperTask<List<T>, R>> pending;
+    private RuntimeException failure;
+
     private Iterator<R> batchIterator;
 
     public BatchMapperIterator(int batch, Iterator<T> origin,
@@ -41,9 +59,36 @@ public class BatchMapperIterator<T, R> extends WrappedIterator<R> {
         this.batch = batch;
         this.originIterator = origin;
         this.mapperCallback = mapper;
+        this.executor = null;
+        this.prefetch = 0;
+        this.pending = null;
+        this.failure = null;
+        this.batchIterator = null;
+    }
+
+    public BatchMapperIterator(int batch, Iterator<T> origin,
+                               Function<List<T>, Iterator<R>> mapper,
+                               ExecutorService executor, int prefetch) {
+        E.checkArgument(batch > 0, "Expect batch > 0, but got %s", batch);
+        E.checkArgumentNotNull(executor, "The executor can't be null");
+        E.checkArgument(prefetch > 0,
+                        "Expect prefetch > 0, but got %s", prefetch);
+        this.batch = batch;
+        this.originIterator = origin;
+        this.mapperCallback = mapper;
+        this.executor = executor;
+        this.prefetch = prefetch;
+        this.pending = new ArrayDeque<>(prefetch + 1);
+        this.failure = null;
         this.batchIterator = null;
     }
 
+    @Override
+    public Spliterator<R> spliterator() {
+        return new CIterSpliterator<>(this, Spliterator.ORDERED |
+                                            Spliterator.NONNULL);
+    }
+
     @Override
     protected Iterator<T> originIterator() {
         return this.originIterator;
@@ -55,6 +100,10 @@ public class BatchMapperIterator<T, R> extends WrappedIterator<R> {
             return true;
         }
 
+        if (this.executor != null) {
+            return this.fetchAsync();
+        }
+
         List<T> batch = this.nextBatch();
         assert this.batchIterator == null;
         while (!batch.isEmpty()) {
@@ -69,6 +118,62 @@ public class BatchMapperIterator<T, R> extends WrappedIterator<R> {
         return false;
     }
 
+    private boolean fetchAsync() {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        assert this.batchIterator == null;
+        this.submitBatches();
+        MapperTask<List<T>, R> task;
+        while ((task = this.pending.poll()) != null) {
+            // Keep the next batches mapping while waiting and consuming
+            this.submitBatches();
+            try {
+                // Fail rather than hang if the executor dropped the task
+                this.batchIterator = task.await();
+            } catch (RuntimeException e) {
+                this.failure = e;
+                // Stop mapping the batches after the failed one
+                this.closePending();
+                throw e;
+            } catch (Error e) {
+                this.closePending();
+                throw e;
+            }
+            if (this.batchIterator != null && this.fetchFromBatch()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void submitBatches() {
+        while (this.pending.size() < this.prefetch) {
+            List<T> batch = this.nextBatch();
+            if (batch.isEmpty()) {
+                break;
+            }
+            this.pending.add(new MapperTask<>(batch, this.mapperCallback,
+                                              null).submit(this.executor));
+        }
+    }
+
+    private void closePending() {
+        MapperTask<List<T>, R> task;
+        while ((task = this.pending.poll()) != null) {
+            task.abandon();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (this.pending != null) {
+            this.closePending();
+        }
+        this.resetBatchIterator();
+        super.close();
+    }
+
     protected final List<T> nextBatch() {
         if (!this.originIterator.hasNext()) {
             return ImmutableList.of();
@@ -20,6 +20,32 @@
 package com.baidu.hugegraph.iterator;
 
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.stream.Stream;
 
 public interface CIter<R> extends Iterator<R>, AutoCloseable, Metadatable {
+
+    /**
+     * Return a spliterator of the remaining elements, the implementations
+     * override it to report more characteristics such as SIZED or NONNULL
+     */
+    public default Spliterator<R> spliterator() {
+        return new CIterSpliterator<>(this, Spliterator.ORDERED);
+    }
+
+    /**
+     * Return a sequential stream of the remaining elements, closing the
+     * stream will close this iterator
+     */
+    public default Stream<R> stream() {
+        return CIterSpliterator.stream(this, false);
+    }
+
+    /**
+     * Return a parallel stream of the remaining elements, closing the
+     * stream will close this iterator
+     */
+    public default Stream<R> parallelStream() {
+        return CIterSpliterator.stream(this, true);
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.iterator;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.baidu.hugegraph.util.E;
+
+/**
+ * A spliterator of CIter which splits by batching the elements from the
+ * iterator into arrays, the size of each batch grows by BATCH_UNIT. The
+ * SIZED and SUBSIZED characteristics are reported only if the size is
+ * specified.
+ */
+public class CIterSpliterator<T> implements Spliterator<T> {
+
+    public static final int BATCH_UNIT = 1 << 10;
+    public static final int MAX_BATCH = 1 << 25;
+
+    private final CIter<T> iterator;
+    private final int characteristics;
+    private long size;
+    private int batch;
+
+    public CIterSpliterator(CIter<T> iterator, int characteristics) {
+        this(iterator, Long.MAX_VALUE,
+             characteristics & ~(Spliterator.SIZED | Spliterator.SUBSIZED));
+    }
+
+    public CIterSpliterator(CIter<T> iterator, long size,
+                            int characteristics) {
+        E.checkArgumentNotNull(iterator, "The iterator can't be null");
+        E.checkArgument(size >= 0L, "Expect size >= 0, but got %s", size);
+        this.iterator = iterator;
+        this.size = size;
+        if (size != Long.MAX_VALUE) {
+            characteristics |= Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+        this.characteristics = characteristics;
+        this.batch = 0;
+    }
+
+    public CIter<T> iterator() {
+        return this.iterator;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        E.checkArgumentNotNull(action, "The action can't be null");
+        if (!this.iterator.hasNext()) {
+            return false;
+        }
+        T next = this.iterator.next();
+        if (this.sized()) {
+            this.size--;
+        }
+        action.accept(next);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        E.checkArgumentNotNull(action, "The action can't be null");
+        this.iterator.forEachRemaining(action);
+        if (this.sized()) {
+            this.size = 0L;
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        long size = this.size;
+        if (size <= 1L || !this.iterator.hasNext()) {
+            return null;
+        }
+        int batch = Math.min(this.batch + BATCH_UNIT, MAX_BATCH);
+        if (batch > size) {
+            batch = (int) size;
+        }
+        Object[] array = new Object[batch];
+        int i = 0;
+        do {
+            array[i] = this.iterator.next();
+        } while (++i < batch && this.iterator.hasNext());
+        this.batch = i;
+        if (this.sized()) {
+            this.size -= i;
+        }
+        return Spliterators.spliterator(array, 0, i, this.characteristics);
+    }
+
+    @Override
+    public long estimateSize() {
+        return this.size;
+    }
+
+    @Override
+    public int characteristics() {
+        return this.characteristics;
+    }
+
+    private boolean sized() {
+        return (this.characteristics & Spliterator.SIZED) != 0;
+    }
+
+    /**
+     * Create a stream of the iterator, which is closed by Stream.close()
+     */
+    public static <T> Stream<T> stream(CIter<T> iterator, boolean parallel) {
+        Stream<T> stream = StreamSupport.stream(iterator.spliterator(),
+                                                parallel);
+        return stream.onClose(() -> {
+            try {
+                iterator.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to close iterator",
+                                                e);
+            }
+        });
+    }
+}
@@ -20,6 +20,7 @@
 package com.baidu.hugegraph.iterator;
 
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 
 import com.baidu.hugegraph.util.E;
@@ -35,6 +36,15 @@ public class FlatMapperFilterIterator<T, R> extends FlatMapperIterator<T, R> {
         this.filterCallback = filter;
     }
 
+    public FlatMapperFilterIterator(Iterator<T> origin,
+                                    Function<T, Iterator<R>> mapper,
+                                    Function<R, Boolean> filter,
+                                    ExecutorService executor, int parallelism,
+                                    boolean ordered) {
+        super(origin, mapper, executor, parallelism, ordered);
+        this.filterCallback = filter;
+    }
+
     @Override
     protected final boolean fetchFromBatch() {
         E.checkNotNull(this.batchIterator, "mapper results");
@@ -19,27 +19,90 @@
 
 package com.baidu.hugegraph.iterator;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import com.baidu.hugegraph.util.E;
 
+/**
+ * Flat map each origin element to an iterator. If an executor is specified,
+ * up to `parallelism` origin elements are expanded concurrently on it. In
+ * the ordered mode the results keep the origin order, and at most
+ * `parallelism` expanded elements are buffered for reordering. In the
+ * unordered mode the results of whichever expansion is done first are
+ * returned first. Closing the iterator, such as a downstream LimitIterator
+ * reaching its limit, cancels the outstanding expansions. An element
+ * rejected by the executor is expanded in the caller thread, and an
+ * IllegalStateException is thrown if the executor is terminated before
+ * the submitted expansions are done.
+ */
 public class FlatMapperIterator<T, R> extends WrappedIterator<R> {
 
     private final Iterator<T> originIterator;
     private final Function<T, Iterator<R>> mapperCallback;
 
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final Deque<MapperTask<T, R>> pending;
+    private final BlockingQueue<MapperTask<T, R>> completed;
+    private RuntimeException failure;
+
     protected Iterator<R> batchIterator;
 
     public FlatMapperIterator(Iterator<T> origin,
                               Function<T, Iterator<R>> mapper) {
         this.originIterator = origin;
         this.mapperCallback = mapper;
+        this.executor = null;
+        this.parallelism = 0;
+        this.pending = null;
+        this.completed = null;
+        this.failure = null;
+        this.batchIterator = null;
+    }
+
+    public FlatMapperIterator(Iterator<T> origin,
+                              Function<T, Iterator<R>> mapper,
+                              ExecutorService executor, int parallelism,
+                              boolean ordered) {
+        E.checkArgumentNotNull(executor, "The executor can't be null");
+        E.checkArgument(parallelism > 0,
+                        "Expect parallelism > 0, but got %s", parallelism);
+        this.originIterator = origin;
+        this.mapperCallback = mapper;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.pending = new ArrayDeque<>(parallelism + 1);
+        this.completed = ordered ? null : new LinkedBlockingQueue<>();
+        this.failure = null;
         this.batchIterator = null;
     }
 
+    public boolean ordered() {
+        return this.executor == null || this.completed == null;
+    }
+
+    @Override
+    public Spliterator<R> spliterator() {
+        int characteristics = Spliterator.NONNULL;
+        if (this.ordered()) {
+            characteristics |= Spliterator.ORDERED;
+        }
+        return new CIterSpliterator<>(this, characteristics);
+    }
+
     @Override
     public void close() throws Exception {
+        if (this.pending != null) {
+            this.closePending();
+        }
         this.resetBatchIterator();
         super.close();
     }
@@ -55,6 +118,10 @@ public class FlatMapperIterator<T, R> extends WrappedIterator<R> {
             return true;
         }
 
+        if (this.executor != null) {
+            return this.fetchAsync();
+        }
+
         while (this.originIterator.hasNext()) {
             T next = this.originIterator.next();
             assert this.batchIterator == null;
@@ -67,6 +134,99 @@ public class FlatMapperIterator<T, R> extends WrappedIterator<R> {
         return false;
     }
 
+    private boolean fetchAsync() {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        assert this.batchIterator == null;
+        this.submitTasks();
+        while (!this.pending.isEmpty()) {
+            MapperTask<T, R> task = this.nextTask();
+            // Keep the next elements expanding while waiting and consuming
+            this.submitTasks();
+            try {
+                this.batchIterator = task.await();
+            } catch (RuntimeException e) {
+                this.failure = e;
+                this.closePending();
+                throw e;
+            } catch (Error e) {
+                this.closePending();
+                throw e;
+            }
+            if (this.batchIterator != null && this.fetchFromBatch()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MapperTask<T, R> nextTask() {
+        if (this.completed == null) {
+            // The task.await() checks if the executor is terminated
+            return this.pending.poll();
+        }
+        MapperTask<T, R> task;
+        try {
+            task = this.completed.poll(MapperTask.POLL_INTERVAL,
+                                       TimeUnit.MILLISECONDS);
+            while (task == null) {
+                this.checkExecutorAlive();
+                task = this.completed.poll(MapperTask.POLL_INTERVAL,
+                                           TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.failure = new IllegalStateException(
+                           "Interrupted while waiting for flat mapper", e);
+            this.closePending();
+            throw this.failure;
+        }
+        boolean removed = this.pending.remove(task);
+        assert removed;
+        return task;
+    }
+
+    private void checkExecutorAlive() {
+        if (!this.executor.isTerminated()) {
+            return;
+        }
+        // The tasks dropped by shutdownNow() will never be done
+        for (MapperTask<T, R> task : this.pending) {
+            if (task.done()) {
+                // The callback may be running
+                return;
+            }
+        }
+        this.failure = new IllegalStateException(
+                       "The executor was terminated before the flat " +
+                       "mapper tasks were done");
+        this.closePending();
+        throw this.failure;
+    }
+
+    private void submitTasks() {
+        while (this.pending.size() < this.parallelism &&
+               this.originIterator.hasNext()) {
+            T next = this.originIterator.next();
+            MapperTask<T, R> task = new MapperTask<>(next, this.mapperCallback,
+                                                     this.completed == null ?
+                                                     null :
+                                                     this.completed::add);
+            this.pending.add(task.submit(this.executor));
+        }
+    }
+
+    private void closePending() {
+        MapperTask<T, R> task;
+        while ((task = this.pending.poll()) != null) {
+            task.abandon();
+        }
+        if (this.completed != null) {
+            this.completed.clear();
+        }
+    }
+
     protected boolean fetchFromBatch() {
         E.checkNotNull(this.batchIterator, "mapper results");
         while (this.batchIterator.hasNext()) {
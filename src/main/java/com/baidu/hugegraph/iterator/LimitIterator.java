@@ -20,6 +20,7 @@
 package com.baidu.hugegraph.iterator;
 
 import java.util.Iterator;
+import java.util.Spliterator;
 import java.util.function.Function;
 
 public class LimitIterator<T> extends WrappedIterator<T> {
@@ -32,6 +33,12 @@ public class LimitIterator<T> extends WrappedIterator<T> {
         this.filterCallback = filter;
     }
 
+    @Override
+    public Spliterator<T> spliterator() {
+        return new CIterSpliterator<>(this, Spliterator.ORDERED |
+                                            Spliterator.NONNULL);
+    }
+
     @Override
     protected Iterator<T> originIterator() {
         return this.originIterator;
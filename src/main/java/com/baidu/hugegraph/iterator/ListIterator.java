@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
 
 import com.baidu.hugegraph.util.InsertionOrderUtil;
 
@@ -31,6 +32,7 @@ public class ListIterator<T> extends WrappedIterator<T> {
     private final Iterator<T> originIterator;
     private final Iterator<T> resultsIterator;
     private final Collection<T> results;
+    private int fetched;
 
     public ListIterator(long capacity, Iterator<T> origin) {
         List<T> results = InsertionOrderUtil.newList();
@@ -44,6 +46,7 @@ public class ListIterator<T> extends WrappedIterator<T> {
         this.originIterator = origin;
         this.results = Collections.unmodifiableList(results);
         this.resultsIterator = this.results.iterator();
+        this.fetched = 0;
     }
 
     public ListIterator(Collection<T> origin) {
@@ -52,6 +55,7 @@ public class ListIterator<T> extends WrappedIterator<T> {
                        Collections.unmodifiableList((List<T>) origin) :
                        Collections.unmodifiableCollection(origin);
         this.resultsIterator = this.results.iterator();
+        this.fetched = 0;
     }
 
     @Override
@@ -63,6 +67,15 @@ public class ListIterator<T> extends WrappedIterator<T> {
         return this.results;
     }
 
+    @Override
+    public Spliterator<T> spliterator() {
+        long remaining = this.results.size() - this.fetched;
+        if (this.current != none()) {
+            remaining++;
+        }
+        return new CIterSpliterator<>(this, remaining, Spliterator.ORDERED);
+    }
+
     @Override
     protected boolean fetch() {
         assert this.current == none();
@@ -70,6 +83,7 @@ public class ListIterator<T> extends WrappedIterator<T> {
             return false;
         }
         this.current = this.resultsIterator.next();
+        this.fetched++;
         return true;
     }
 
@@ -20,6 +20,7 @@
 package com.baidu.hugegraph.iterator;
 
 import java.util.Iterator;
+import java.util.Spliterator;
 import java.util.function.Function;
 
 public class MapperIterator<T, R> extends WrappedIterator<R> {
@@ -32,6 +33,12 @@ public class MapperIterator<T, R> extends WrappedIterator<R> {
         this.mapperCallback = mapper;
     }
 
+    @Override
+    public Spliterator<R> spliterator() {
+        return new CIterSpliterator<>(this, Spliterator.ORDERED |
+                                            Spliterator.NONNULL);
+    }
+
     @Override
     protected Iterator<T> originIterator() {
         return this.originIterator;
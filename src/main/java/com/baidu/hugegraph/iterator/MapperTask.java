@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.iterator;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A mapper call submitted to an executor by the asynchronous mapper
+ * iterators. The results of an abandoned task are always closed, by the
+ * consumer if it has been mapped, or else by the task itself. The callback
+ * is called once the task is done, including being cancelled.
+ */
+final class MapperTask<T, R> implements Callable<Iterator<R>> {
+
+    // The interval in milliseconds to check if the executor is terminated
+    static final long POLL_INTERVAL = 1000L;
+
+    private final T input;
+    private final Function<T, Iterator<R>> mapper;
+    private final Consumer<MapperTask<T, R>> callback;
+    private ExecutorService executor;
+    private FutureTask<Iterator<R>> future;
+
+    // Guarded by this
+    private Iterator<R> results;
+    private boolean abandoned;
+
+    public MapperTask(T input, Function<T, Iterator<R>> mapper,
+                      Consumer<MapperTask<T, R>> callback) {
+        this.input = input;
+        this.mapper = mapper;
+        this.callback = callback;
+        this.executor = null;
+        this.future = null;
+        this.results = null;
+        this.abandoned = false;
+    }
+
+    /**
+     * Submit the task to the executor, or run it in the caller thread if
+     * the executor rejects it
+     */
+    public MapperTask<T, R> submit(ExecutorService executor) {
+        this.executor = executor;
+        this.future = new FutureTask<Iterator<R>>(this) {
+            @Override
+            protected void done() {
+                if (MapperTask.this.callback != null) {
+                    MapperTask.this.callback.accept(MapperTask.this);
+                }
+            }
+        };
+        try {
+            executor.execute(this.future);
+        } catch (RejectedExecutionException e) {
+            this.future.run();
+        }
+        return this;
+    }
+
+    public boolean done() {
+        return this.future.isDone();
+    }
+
+    @Override
+    public Iterator<R> call() {
+        Iterator<R> results = this.mapper.apply(this.input);
+        try {
+            // Trigger the first fetch of lazy results in parallel too
+            if (results != null) {
+                results.hasNext();
+            }
+        } catch (Throwable e) {
+            WrappedIterator.close(results);
+            throw e;
+        }
+        synchronized (this) {
+            if (this.abandoned) {
+                WrappedIterator.close(results);
+                return null;
+            }
+            this.results = results;
+        }
+        return results;
+    }
+
+    /**
+     * Wait for the mapper results, a RuntimeException or Error thrown by
+     * the mapper is rethrown as is. Throw IllegalStateException if the
+     * executor is terminated without running the task, such as the task
+     * dropped by shutdownNow() or a discarding rejection policy.
+     */
+    public Iterator<R> await() {
+        try {
+            while (true) {
+                try {
+                    return this.future.get(POLL_INTERVAL,
+                                           TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // The task run by a terminated executor must be done
+                    if (this.executor.isTerminated() && !this.done()) {
+                        throw new IllegalStateException(
+                                  "The executor was terminated before " +
+                                  "the mapper task was done");
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                      "Interrupted while waiting for mapper", e);
+        } catch (CancellationException e) {
+            throw new IllegalStateException("The mapper has been cancelled",
+                                            e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed to call mapper", cause);
+        }
+    }
+
+    public void abandon() {
+        /*
+         * The cancel() also succeeds if the mapper is running, so mark it
+         * abandoned anyway, and whoever comes later closes the results
+         */
+        this.future.cancel(false);
+        Iterator<R> results;
+        synchronized (this) {
+            this.abandoned = true;
+            results = this.results;
+            this.results = null;
+        }
+        WrappedIterator.close(results);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.perf;
+
+import java.util.Arrays;
+
+import com.baidu.hugegraph.util.Histogram;
+
+/**
+ * A NormalStopwatch which also counts the cost of each call in log-linear
+ * buckets to report the percentiles. The buckets array grows only when a
+ * cost with larger magnitude appears at the first time.
+ */
+public final class HistogramStopwatch extends NormalStopwatch {
+
+    // Enough for the costs up to about 1ms
+    private static final int INIT_BUCKETS = Histogram.index(1L << 20) + 1;
+
+    private static final double[] PERCENTILES = {50D, 90D, 99D, 99.9D};
+    private static final String[] PERCENTILE_NAMES = {
+            "p50", "p90", "p99", "p999"
+    };
+
+    private long[] buckets;
+
+    public HistogramStopwatch(String name, Stopwatch parent) {
+        super(name, parent);
+        this.buckets = new long[INIT_BUCKETS];
+    }
+
+    public HistogramStopwatch(String name, Path parent) {
+        super(name, parent);
+        this.buckets = new long[INIT_BUCKETS];
+    }
+
+    @Override
+    protected void recordCost(long cost) {
+        int index = Histogram.index(cost < 0L ? 0L : cost);
+        if (index >= this.buckets.length) {
+            this.buckets = Arrays.copyOf(this.buckets, index + 1);
+        }
+        this.buckets[index]++;
+    }
+
+    /**
+     * @param percentile: the percentile in range [0, 100]
+     * @return The cost at the percentile in nanoseconds
+     */
+    public long percentile(double percentile) {
+        return Histogram.percentiles(this.buckets, this.maxCost(),
+                                     percentile)[0];
+    }
+
+    @Override
+    public void merge(Stopwatch other) {
+        super.merge(other);
+        if (other instanceof HistogramStopwatch) {
+            long[] buckets = ((HistogramStopwatch) other).buckets;
+            if (buckets.length > this.buckets.length) {
+                this.buckets = Arrays.copyOf(this.buckets, buckets.length);
+            }
+            for (int i = 0; i < buckets.length; i++) {
+                this.buckets[i] += buckets[i];
+            }
+        }
+    }
+
+    @Override
+    public Stopwatch copy() {
+        HistogramStopwatch copy = (HistogramStopwatch) super.copy();
+        copy.buckets = this.buckets.clone();
+        return copy;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(this.buckets, 0L);
+    }
+
+    @Override
+    public String toJson() {
+        String json = super.toJson();
+        long[] values = Histogram.percentiles(this.buckets, this.maxCost(),
+                                              PERCENTILES);
+        StringBuilder sb = new StringBuilder(json.length() + 64);
+        // Append the percentiles before the last '}'
+        sb.append(json, 0, json.length() - 1);
+        for (int i = 0; i < values.length; i++) {
+            sb.append(",\"").append(PERCENTILE_NAMES[i]).append("\":")
+              .append(values[i]);
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.perf;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.baidu.hugegraph.perf.PerfReporter.Metric;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+/**
+ * Append the metrics to a file as json lines, one line for each path
+ */
+public class JsonLinesSink implements MetricsSink {
+
+    private final Writer writer;
+
+    public JsonLinesSink(String file) throws IOException {
+        this(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8,
+                                     StandardOpenOption.CREATE,
+                                     StandardOpenOption.APPEND));
+    }
+
+    public JsonLinesSink(Writer writer) {
+        this.writer = writer instanceof BufferedWriter ?
+                      writer : new BufferedWriter(writer);
+    }
+
+    @Override
+    public synchronized void report(long timestamp, List<Metric> metrics)
+                                    throws IOException {
+        for (Metric metric : metrics) {
+            this.writer.write("{\"timestamp\":");
+            this.writer.write(Long.toString(timestamp));
+            this.writer.write(",\"path\":\"");
+            this.writer.write(escape(metric.path().toString()));
+            this.writer.write("\",\"times\":");
+            this.writer.write(Long.toString(metric.times()));
+            this.writer.write(",\"total_cost\":");
+            this.writer.write(Long.toString(metric.totalCost()));
+            this.writer.write(",\"mean_cost\":");
+            this.writer.write(Long.toString(metric.meanCost()));
+            this.writer.write("}\n");
+        }
+        this.writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+
+    private static char[] escape(String value) {
+        return JsonStringEncoder.getInstance().quoteAsString(value);
+    }
+}
@@ -19,6 +19,7 @@
 
 package com.baidu.hugegraph.perf;
 
+import java.util.Arrays;
 import java.util.List;
 
 import com.baidu.hugegraph.perf.PerfUtil.FastMap;
@@ -35,6 +36,8 @@ public final class LightStopwatch implements Stopwatch {
     private final Path parent;
     private final Path id;
     private final FastMap<String, Stopwatch> children;
+    // The children indexed by the site id of PerfUtil
+    private Stopwatch[] childrenById;
 
     public LightStopwatch(String name, Stopwatch parent) {
         this(name, parent.id());
@@ -46,6 +49,7 @@ public final class LightStopwatch implements Stopwatch {
         this.parent = parent;
         this.id = Stopwatch.id(parent, name);
         this.children = new FastMap<>();
+        this.childrenById = EMPTY_CHILDREN;
     }
 
     @Override
@@ -75,8 +79,9 @@ public final class LightStopwatch implements Stopwatch {
     }
 
     @Override
-    public void endTime(long startTime) {
-        this.totalCost += PerfUtil.now() - this.lastStartTime;
+    public void endTime(long startTime, long weight) {
+        this.totalCost += (PerfUtil.now() - this.lastStartTime) * weight;
+        this.times += weight - 1L;
     }
 
     @Override
@@ -139,6 +144,12 @@ public final class LightStopwatch implements Stopwatch {
                                   c -> c.totalTimes()).sum();
     }
 
+    @Override
+    public void merge(Stopwatch other) {
+        this.times += other.times();
+        this.totalCost += other.totalCost();
+    }
+
     @Override
     public LightStopwatch copy() {
         try {
@@ -161,6 +172,26 @@ public final class LightStopwatch implements Stopwatch {
         return this.children.put(name, watch);
     }
 
+    @Override
+    public Stopwatch child(int id) {
+        Stopwatch[] children = this.childrenById;
+        return id < children.length ? children[id] : null;
+    }
+
+    @Override
+    public Stopwatch child(int id, Stopwatch watch) {
+        if (id >= this.childrenById.length) {
+            if (watch == null) {
+                return null;
+            }
+            int size = Math.max(id + 1, this.childrenById.length * 2);
+            this.childrenById = Arrays.copyOf(this.childrenById, size);
+        }
+        Stopwatch old = this.childrenById[id];
+        this.childrenById[id] = watch;
+        return old;
+    }
+
     @Override
     public boolean empty() {
         return this.children.size() == 0;
@@ -175,6 +206,7 @@ public final class LightStopwatch implements Stopwatch {
         this.totalChildrenTimes = -1L;
 
         this.children.clear();
+        Arrays.fill(this.childrenById, null);
     }
 
     @Override
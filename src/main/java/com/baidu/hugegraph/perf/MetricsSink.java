@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.perf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import com.baidu.hugegraph.perf.PerfReporter.Metric;
+
+/**
+ * The SPI to publish the metrics reported by PerfReporter
+ */
+public interface MetricsSink extends Closeable {
+
+    /**
+     * Publish the deltas of stopwatches since last report
+     * @param timestamp: the milliseconds when the metrics were collected
+     * @param metrics:   the metrics of the paths called since last report
+     */
+    public void report(long timestamp, List<Metric> metrics)
+                       throws IOException;
+
+    @Override
+    public default void close() throws IOException {
+        // pass
+    }
+}
@@ -19,6 +19,7 @@
 
 package com.baidu.hugegraph.perf;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.BiFunction;
 
@@ -29,7 +30,7 @@ import com.baidu.hugegraph.perf.PerfUtil.LocalStack;
 import com.baidu.hugegraph.testutil.Whitebox;
 import com.baidu.hugegraph.util.Log;
 
-public final class NormalStopwatch implements Stopwatch {
+public class NormalStopwatch implements Stopwatch {
 
     private static final Logger LOG = Log.logger(Stopwatch.class);
 
@@ -51,7 +52,9 @@ public final class NormalStopwatch implements Stopwatch {
     private final String name;
     private final Path parent;
     private final Path id;
-    private final FastMap<String, Stopwatch> children;
+    private FastMap<String, Stopwatch> children;
+    // The children indexed by the site id of PerfUtil
+    private Stopwatch[] childrenById;
 
     public NormalStopwatch(String name, Stopwatch parent) {
         this(name, parent.id());
@@ -63,6 +66,7 @@ public final class NormalStopwatch implements Stopwatch {
         this.parent = parent;
         this.id = Stopwatch.id(parent, name);
         this.children = new FastMap<>();
+        this.childrenById = EMPTY_CHILDREN;
     }
 
     @Override
@@ -102,7 +106,7 @@ public final class NormalStopwatch implements Stopwatch {
     }
 
     @Override
-    public void endTime(long startTime) {
+    public void endTime(long startTime, long weight) {
         assert startTime >= this.lastStartTime && this.lastStartTime != -1L :
                MULTI_THREAD_ACCESS_ERROR;
 
@@ -122,9 +126,20 @@ public final class NormalStopwatch implements Stopwatch {
             this.maxCost = cost;
         }
 
-        this.totalCost += cost;
+        this.totalCost += cost * weight;
+        // The times has been increased by startTime()
+        this.times += weight - 1L;
         this.totalSelfWasted += wastedTime;
         this.lastStartTime = -1L;
+
+        this.recordCost(cost);
+    }
+
+    /**
+     * Record the cost of each call, called by endTime()
+     */
+    protected void recordCost(long cost) {
+        // pass
     }
 
     @Override
@@ -193,10 +208,27 @@ public final class NormalStopwatch implements Stopwatch {
                                   c -> c.totalTimes()).sum();
     }
 
+    @Override
+    public void merge(Stopwatch other) {
+        this.times += other.times();
+        this.totalCost += other.totalCost();
+        if (other.minCost() >= 0L && this.minCost > other.minCost()) {
+            this.minCost = other.minCost();
+        }
+        if (this.maxCost < other.maxCost()) {
+            this.maxCost = other.maxCost();
+        }
+        this.totalSelfWasted += other.totalSelfWasted();
+    }
+
     @Override
     public Stopwatch copy() {
         try {
-            return (Stopwatch) super.clone();
+            NormalStopwatch copy = (NormalStopwatch) super.clone();
+            // Don't share the children with the copy
+            copy.children = this.children.copy();
+            copy.childrenById = this.childrenById.clone();
+            return copy;
         } catch (CloneNotSupportedException e) {
             throw new RuntimeException(e);
         }
@@ -215,6 +247,26 @@ public final class NormalStopwatch implements Stopwatch {
         return this.children.put(name, watch);
     }
 
+    @Override
+    public Stopwatch child(int id) {
+        Stopwatch[] children = this.childrenById;
+        return id < children.length ? children[id] : null;
+    }
+
+    @Override
+    public Stopwatch child(int id, Stopwatch watch) {
+        if (id >= this.childrenById.length) {
+            if (watch == null) {
+                return null;
+            }
+            int size = Math.max(id + 1, this.childrenById.length * 2);
+            this.childrenById = Arrays.copyOf(this.childrenById, size);
+        }
+        Stopwatch old = this.childrenById[id];
+        this.childrenById[id] = watch;
+        return old;
+    }
+
     @Override
     public boolean empty() {
         return this.children.size() == 0;
@@ -234,6 +286,7 @@ public final class NormalStopwatch implements Stopwatch {
         this.totalChildrenTimes = -1L;
 
         this.children.clear();
+        Arrays.fill(this.childrenById, null);
     }
 
     @Override
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.perf;
+
+import java.io.ByteArrayInputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+
+import com.baidu.hugegraph.perf.PerfUtil.Watched;
+import com.baidu.hugegraph.util.E;
+import com.baidu.hugegraph.util.Log;
+import com.baidu.hugegraph.util.ReflectionUtil;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.LoaderClassPath;
+
+/**
+ * The java agent to profile the @Watched methods of loaded classes by
+ * retransforming, and restore the original classes when detached.
+ * Start it by `-javaagent:hugegraph-common.jar[=packages]` or load it into
+ * a running jvm, the packages are separated by ',' to attach immediately.
+ */
+public final class PerfAgent {
+
+    private static final Logger LOG = Log.logger(PerfAgent.class);
+
+    private static volatile Instrumentation INSTRUMENTATION = null;
+    private static WatchedTransformer TRANSFORMER = null;
+
+    public static void premain(String args, Instrumentation inst) {
+        agentmain(args, inst);
+    }
+
+    public static void agentmain(String args, Instrumentation inst) {
+        INSTRUMENTATION = inst;
+        if (args != null && !args.isEmpty()) {
+            attach(args.split(","));
+        }
+    }
+
+    public static boolean installed() {
+        return INSTRUMENTATION != null;
+    }
+
+    public static synchronized boolean attached() {
+        return TRANSFORMER != null;
+    }
+
+    /**
+     * Profile the @Watched methods of the classes in the packages, both
+     * the loaded classes and the classes loaded later.
+     * @param packages: the prefixes of the class names
+     * @return the number of loaded classes retransformed
+     */
+    public static synchronized int attach(String... packages) {
+        Instrumentation inst = instrumentation();
+        E.checkState(TRANSFORMER == null,
+                     "The perf agent has been attached");
+        E.checkArgument(packages.length > 0,
+                        "Must specify at least one package to profile");
+
+        WatchedTransformer transformer = new WatchedTransformer(packages);
+        inst.addTransformer(transformer, true);
+        TRANSFORMER = transformer;
+
+        List<Class<?>> classes = new ArrayList<>();
+        for (Class<?> clazz : inst.getAllLoadedClasses()) {
+            if (transformer.matches(clazz.getName()) &&
+                inst.isModifiableClass(clazz) && watched(clazz)) {
+                classes.add(clazz);
+            }
+        }
+        retransform(inst, classes);
+        LOG.info("Attached perf agent to {} loaded classes", classes.size());
+        return classes.size();
+    }
+
+    /**
+     * Remove the profiling code of all the classes transformed
+     * @return the number of classes restored
+     */
+    public static synchronized int detach() {
+        Instrumentation inst = instrumentation();
+        WatchedTransformer transformer = TRANSFORMER;
+        if (transformer == null) {
+            return 0;
+        }
+        inst.removeTransformer(transformer);
+        TRANSFORMER = null;
+
+        List<Class<?>> classes = new ArrayList<>();
+        for (Class<?> clazz : inst.getAllLoadedClasses()) {
+            if (transformer.transformed(clazz.getName())) {
+                classes.add(clazz);
+            }
+        }
+        // The original class files are used when no transformer applied
+        retransform(inst, classes);
+        LOG.info("Detached perf agent from {} classes", classes.size());
+        return classes.size();
+    }
+
+    private static Instrumentation instrumentation() {
+        Instrumentation inst = INSTRUMENTATION;
+        E.checkState(inst != null,
+                     "The perf agent is not installed, please start jvm " +
+                     "with -javaagent or load it into the running jvm");
+        return inst;
+    }
+
+    private static boolean watched(Class<?> clazz) {
+        try {
+            return !ReflectionUtil.getMethodsAnnotatedWith(
+                    clazz, Watched.class, false).isEmpty();
+        } catch (Throwable e) {
+            // Such as NoClassDefFoundError of the method signature
+            return false;
+        }
+    }
+
+    private static void retransform(Instrumentation inst,
+                                    List<Class<?>> classes) {
+        if (classes.isEmpty()) {
+            return;
+        }
+        try {
+            inst.retransformClasses(classes.toArray(new Class<?>[0]));
+        } catch (UnmodifiableClassException e) {
+            throw new IllegalStateException("Failed to retransform classes",
+                                            e);
+        }
+    }
+
+    /**
+     * Inject the profiling code into the @Watched methods of class files
+     */
+    public static final class WatchedTransformer
+                        implements ClassFileTransformer {
+
+        private final String[] prefixes;
+        // The internal names of the transformed classes
+        private final Set<String> transformed;
+
+        public WatchedTransformer(String... packages) {
+            this.prefixes = new String[packages.length];
+            for (int i = 0; i < packages.length; i++) {
+                this.prefixes[i] = packages[i].trim().replace('.', '/');
+            }
+            this.transformed = ConcurrentHashMap.newKeySet();
+        }
+
+        public boolean matches(String className) {
+            String name = className.replace('.', '/');
+            for (String prefix : this.prefixes) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean transformed(String className) {
+            return this.transformed.contains(className.replace('.', '/'));
+        }
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className,
+                                Class<?> classBeingRedefined,
+                                ProtectionDomain domain, byte[] classfile) {
+            if (className == null || !this.matches(className)) {
+                return null;
+            }
+            try {
+                return this.instrument(loader, className, classfile);
+            } catch (Throwable e) {
+                // The class is loaded as-is if failed
+                LOG.warn("Failed to profile class {}", className, e);
+                return null;
+            }
+        }
+
+        private byte[] instrument(ClassLoader loader, String className,
+                                  byte[] classfile) throws Exception {
+            ClassPool pool = new ClassPool(true);
+            if (loader != null) {
+                pool.appendClassPath(new LoaderClassPath(loader));
+            }
+            CtClass ctClass = pool.makeClass(
+                              new ByteArrayInputStream(classfile));
+            try {
+                List<CtMethod> methods = ReflectionUtil
+                                         .getMethodsAnnotatedWith(
+                                         ctClass, Watched.class, false);
+                if (methods.isEmpty()) {
+                    return null;
+                }
+                for (CtMethod method : methods) {
+                    PerfUtil.profile(method);
+                }
+                byte[] bytes = ctClass.toBytecode();
+                this.transformed.add(className);
+                return bytes;
+            } finally {
+                ctClass.detach();
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.perf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+
+import com.baidu.hugegraph.perf.Stopwatch.Path;
+import com.baidu.hugegraph.util.E;
+import com.baidu.hugegraph.util.Log;
+
+/**
+ * Report the stopwatches of all threads to the sinks periodically, the
+ * counters are reported as deltas since last report. The stopwatches are
+ * only read without merge or reset, so it doesn't affect other users of
+ * PerfUtil.
+ * NOTE: the calls recorded between last report and a reset of PerfUtil,
+ * like clear() or snapshot(true), are not reported.
+ */
+public final class PerfReporter {
+
+    private static final Logger LOG = Log.logger(PerfReporter.class);
+
+    private final List<MetricsSink> sinks;
+    // The last reported [times, total cost] of each stopwatch of each
+    // thread, a stopwatch reset by its thread is replaced by a new one
+    private Map<Stopwatch, long[]> lastCounters;
+    private ScheduledExecutorService executor;
+
+    public PerfReporter(MetricsSink... sinks) {
+        E.checkArgument(sinks.length > 0,
+                        "Must specify at least one metrics sink");
+        this.sinks = Collections.unmodifiableList(Arrays.asList(sinks));
+        this.lastCounters = new IdentityHashMap<>();
+        this.executor = null;
+    }
+
+    public List<MetricsSink> sinks() {
+        return this.sinks;
+    }
+
+    /**
+     * Report periodically in a daemon thread
+     * @param interval: the interval in milliseconds
+     */
+    public synchronized void start(long interval) {
+        E.checkArgument(interval > 0L,
+                        "The interval must be > 0, but got %s", interval);
+        E.checkState(this.executor == null,
+                     "The perf reporter has been started");
+        ThreadFactory factory = new BasicThreadFactory.Builder()
+                                                      .namingPattern(
+                                                       "perf-reporter")
+                                                      .daemon(true)
+                                                      .build();
+        this.executor = new ScheduledThreadPoolExecutor(1, factory);
+        this.executor.scheduleWithFixedDelay(() -> {
+            try {
+                this.report();
+            } catch (Throwable e) {
+                LOG.warn("Failed to report perf metrics", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop reporting and close the sinks
+     */
+    public synchronized void stop() throws IOException {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            try {
+                this.executor.awaitTermination(1L, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.executor = null;
+        }
+        for (MetricsSink sink : this.sinks) {
+            sink.close();
+        }
+    }
+
+    /**
+     * Collect the deltas since last report and publish them to the sinks
+     * @return the metrics reported
+     */
+    public synchronized List<Metric> report() throws IOException {
+        long timestamp = System.currentTimeMillis();
+        List<Metric> metrics = this.collect();
+        for (MetricsSink sink : this.sinks) {
+            sink.report(timestamp, metrics);
+        }
+        return metrics;
+    }
+
+    private List<Metric> collect() {
+        Map<Stopwatch, long[]> counters = new IdentityHashMap<>(
+                                          this.lastCounters.size());
+        // The summed deltas [times, total cost] of each path
+        Map<Path, long[]> deltas = new LinkedHashMap<>();
+        PerfUtil.forEachStopwatch(watch -> {
+            long times = watch.times();
+            long cost = watch.totalCost();
+            counters.put(watch, new long[]{times, cost});
+
+            long[] last = this.lastCounters.get(watch);
+            if (last != null) {
+                times -= last[0];
+                cost -= last[1];
+            }
+            if (times > 0L) {
+                long[] delta = deltas.computeIfAbsent(watch.id(),
+                                                      k -> new long[2]);
+                delta[0] += times;
+                delta[1] += cost;
+            }
+        });
+        this.lastCounters = counters;
+
+        List<Metric> metrics = new ArrayList<>(deltas.size());
+        for (Map.Entry<Path, long[]> e : deltas.entrySet()) {
+            long[] delta = e.getValue();
+            metrics.add(new Metric(e.getKey(), delta[0], delta[1]));
+        }
+        return metrics;
+    }
+
+    public static final class Metric {
+
+        private final Path path;
+        private final long times;
+        private final long totalCost;
+
+        public Metric(Path path, long times, long totalCost) {
+            this.path = path;
+            this.times = times;
+            this.totalCost = totalCost;
+        }
+
+        public Path path() {
+            return this.path;
+        }
+
+        public long times() {
+            return this.times;
+        }
+
+        /**
+         * The total cost in nanoseconds
+         */
+        public long totalCost() {
+            return this.totalCost;
+        }
+
+        public long meanCost() {
+            return this.times == 0L ? 0L : this.totalCost / this.times;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{times=%s, total_cost=%s}",
+                                 this.path, this.times, this.totalCost);
+        }
+    }
+}
@@ -19,10 +19,15 @@
 
 package com.baidu.hugegraph.perf;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EmptyStackException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -30,13 +35,23 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 
 import com.baidu.hugegraph.func.TriFunction;
@@ -44,6 +59,7 @@ import com.baidu.hugegraph.perf.Stopwatch.Path;
 import com.baidu.hugegraph.testutil.Assert.ThrowableConsumer;
 import com.baidu.hugegraph.util.Log;
 import com.baidu.hugegraph.util.ReflectionUtil;
+import com.google.common.collect.MapMaker;
 import com.google.common.reflect.ClassPath.ClassInfo;
 
 import javassist.CannotCompileException;
@@ -57,20 +73,75 @@ public final class PerfUtil {
     private static final int DEFAUL_CAPATICY = 1024;
 
     private static final ThreadLocal<PerfUtil> INSTANCE = new ThreadLocal<>();
+    // The instances of all threads, used to merge the stopwatches, an
+    // instance is released with its thread
+    private static final Set<PerfUtil> INSTANCES = Collections.newSetFromMap(
+                                       new MapMaker().weakKeys().makeMap());
+
+    // The states of an instance, a snapshot drains it only when idle
+    private static final int IDLE = 0;
+    private static final int BUSY = 1;
+    private static final int DRAINING = 2;
+    private static final AtomicIntegerFieldUpdater<PerfUtil> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(PerfUtil.class, "state");
+
+    // The resets requested by snapshot, applied by the owner thread
+    private static final int RESET_NONE = 0;
+    // Hand over the stopwatches to the next snapshot, then reset
+    private static final int RESET_HAND_OVER = 1;
+    // The stopwatches have been drained by a snapshot, just reset
+    private static final int RESET_DISCARD = 2;
+    private static final AtomicIntegerFieldUpdater<PerfUtil> RESET =
+            AtomicIntegerFieldUpdater.newUpdater(PerfUtil.class,
+                                                 "resetRequest");
 
     private static PerfUtil SINGLE_INSTANCE = null;
     private static Thread SINGLE_THREAD = null;
     private static LocalTimer LOCAL_TIMER = null;
     private static boolean LIGHT_WATCH = false;
-
+    private static boolean HISTOGRAM_WATCH = false;
+    private static ScheduledExecutorService SNAPSHOT_EXECUTOR = null;
+    // Measure 1 in SAMPLE_INTERVAL calls of each watched site
+    private static int SAMPLE_INTERVAL = 1;
+    // The cost in nanoseconds allowed per second of each watched site
+    private static long SAMPLE_BUDGET = 0L;
+
+    // The names of watched sites indexed by the site id
+    private static volatile String[] SITE_NAMES = new String[0];
+    private static final Map<String, Integer> SITE_IDS = new HashMap<>();
+
+    private final Thread thread;
+    // Only accessed by the owner thread
     private final Map<Path, Stopwatch> stopwatches;
+    // The stopwatches published by the owner thread for merging
+    private volatile Watches published;
+    // The stopwatches handed over by the owner thread for snapshot
+    private final Queue<Watches> handovers;
     private final LocalStack<Stopwatch> callStack;
     private final Stopwatch root;
-
-    private PerfUtil() {
+    // Set to BUSY by the owner thread when running a call
+    private volatile int state;
+    // Reset by the owner thread itself when no call is running
+    private volatile int resetRequest;
+
+    // The depth of skipped calls, the nested calls are skipped too
+    private int skipDepth;
+    // The weights of sampled calls indexed by the depth of call stack
+    private long[] weights;
+    private final Sampler sampler;
+
+    private PerfUtil(Thread thread) {
+        this.thread = thread;
         this.stopwatches = new HashMap<>(DEFAUL_CAPATICY);
+        this.published = Watches.EMPTY;
+        this.handovers = new ConcurrentLinkedQueue<>();
         this.callStack = new LocalStack<>(DEFAUL_CAPATICY);
         this.root = newStopwatch(Path.ROOT_NAME, Path.EMPTY);
+        this.state = IDLE;
+        this.resetRequest = RESET_NONE;
+        this.skipDepth = 0;
+        this.weights = null;
+        this.sampler = new Sampler();
     }
 
     public static PerfUtil instance() {
@@ -82,36 +153,173 @@ public final class PerfUtil {
 
         PerfUtil p = INSTANCE.get();
         if (p == null) {
-            p = new PerfUtil();
+            p = new PerfUtil(Thread.currentThread());
             INSTANCE.set(p);
+            INSTANCES.add(p);
         }
         return p;
     }
 
-    public static void profileSingleThread(boolean yes) {
-        SINGLE_INSTANCE = yes ? PerfUtil.instance() : null;
-        SINGLE_THREAD = yes ? Thread.currentThread() : null;
+    /**
+     * Merge the stopwatches of all threads by path, the counters are
+     * summed and the min/max cost are combined.
+     * @return A detached PerfUtil holding the merged stopwatches
+     */
+    public static PerfUtil merge() {
+        return snapshot(false);
     }
 
-    public static void useLocalTimer(boolean yes) {
-        if (yes) {
-            if (LOCAL_TIMER != null) {
-                return;
+    /**
+     * Merge the stopwatches of all threads, and reset them if specified.
+     * NOTE: the stopwatches of a thread which is running a call can't be
+     * reset from outside, the thread hands them over when the outermost
+     * call ends, and they are merged by the next snapshot. The stopwatches
+     * of a dead thread are released once it's garbage collected.
+     */
+    public static PerfUtil snapshot(boolean reset) {
+        PerfUtil merged = new PerfUtil(null);
+        synchronized (INSTANCES) {
+            for (PerfUtil instance : INSTANCES) {
+                if (reset) {
+                    instance.drainTo(merged);
+                } else {
+                    instance.mergeTo(merged);
+                }
             }
-            LOCAL_TIMER = new LocalTimer();
-            try {
-                LOCAL_TIMER.startTimeUpdateLoop();
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+        }
+        return merged;
+    }
+
+    /**
+     * Visit the stopwatches of all threads without merging or reset, the
+     * stopwatches handed over but not taken by snapshot yet are included.
+     * NOTE: the stopwatches are still being updated by their threads
+     */
+    static void forEachStopwatch(Consumer<Stopwatch> consumer) {
+        for (PerfUtil instance : INSTANCES) {
+            Watches watches = instance.published;
+            for (Watches handover : instance.handovers) {
+                if (handover != watches) {
+                    handover.list().forEach(consumer);
+                }
             }
+            watches.list().forEach(consumer);
+        }
+    }
 
-            if (!LIGHT_WATCH) {
-                NormalStopwatch.initEachWastedLost();
+    private void mergeTo(PerfUtil target) {
+        boolean drained = this.resetRequest == RESET_DISCARD;
+        Watches watches = this.published;
+        for (Watches handover : this.handovers) {
+            if (handover != watches) {
+                target.merge(handover);
             }
+        }
+        if (!drained) {
+            target.merge(watches);
+        }
+    }
+
+    private void drainTo(PerfUtil target) {
+        if (!this.thread.isAlive()) {
+            // Nothing will be changed by the dead thread
+            this.mergeTo(target);
+            this.handovers.clear();
+            INSTANCES.remove(this);
+            return;
+        }
+
+        Watches handover;
+        while ((handover = this.handovers.poll()) != null) {
+            target.merge(handover);
+        }
+        if (STATE.compareAndSet(this, IDLE, DRAINING)) {
+            if (this.resetRequest != RESET_DISCARD) {
+                target.merge(this.published);
+                this.resetRequest = RESET_DISCARD;
+            }
+            this.state = IDLE;
         } else {
-            if (LOCAL_TIMER == null) {
+            // Don't overwrite the discard which is being applied
+            RESET.compareAndSet(this, RESET_NONE, RESET_HAND_OVER);
+        }
+    }
+
+    private void merge(Watches watches) {
+        for (Stopwatch watch : watches.list()) {
+            Stopwatch target = this.stopwatches.get(watch.id());
+            if (target == null) {
+                target = newStopwatch(watch.name(), watch.parent());
+                this.addStopwatch(target);
+            }
+            target.merge(watch);
+        }
+    }
+
+    /**
+     * Take snapshot with reset periodically and pass it to the consumer.
+     * @param interval: the interval in milliseconds
+     */
+    public static synchronized void startSnapshot(long interval,
+                                                  Consumer<PerfUtil> consumer) {
+        com.baidu.hugegraph.util.E.checkArgument(interval > 0L,
+                "The interval must be > 0, but got %s", interval);
+        com.baidu.hugegraph.util.E.checkState(SNAPSHOT_EXECUTOR == null,
+                "The periodic snapshot has been started");
+        ThreadFactory factory = new BasicThreadFactory.Builder()
+                                                      .namingPattern(
+                                                       "perf-snapshot")
+                                                      .daemon(true)
+                                                      .build();
+        SNAPSHOT_EXECUTOR = new ScheduledThreadPoolExecutor(1, factory);
+        SNAPSHOT_EXECUTOR.scheduleWithFixedDelay(() -> {
+            try {
+                consumer.accept(snapshot(true));
+            } catch (Throwable e) {
+                LOG.warn("Failed to consume the perf snapshot", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopSnapshot() {
+        if (SNAPSHOT_EXECUTOR != null) {
+            SNAPSHOT_EXECUTOR.shutdownNow();
+            SNAPSHOT_EXECUTOR = null;
+        }
+    }
+
+    public static void profileSingleThread(boolean yes) {
+        SINGLE_INSTANCE = yes ? PerfUtil.instance() : null;
+        SINGLE_THREAD = yes ? Thread.currentThread() : null;
+    }
+
+    public static void useLocalTimer(boolean yes) {
+        useClock(yes ? ClockSource.SPIN : ClockSource.NANO_TIME);
+    }
+
+    public static void useClock(ClockSource source) {
+        useClock(source, LocalTimer.DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Switch the clock source of now()
+     * @param resolution: the update interval in nanoseconds of the
+     *                    COARSE clock, ignored by other sources
+     */
+    public static synchronized void useClock(ClockSource source,
+                                             long resolution) {
+        com.baidu.hugegraph.util.E.checkArgumentNotNull(source,
+                "The clock source can't be null");
+        com.baidu.hugegraph.util.E.checkArgument(resolution > 0L,
+                "The clock resolution must be > 0, but got %s", resolution);
+        if (source == clock()) {
+            if (source != ClockSource.COARSE ||
+                resolution == LOCAL_TIMER.resolution()) {
                 return;
             }
+        }
+
+        if (LOCAL_TIMER != null) {
             try {
                 LOCAL_TIMER.stop();
             } catch (InterruptedException e) {
@@ -120,6 +328,31 @@ public final class PerfUtil {
                 LOCAL_TIMER = null;
             }
         }
+        if (source == ClockSource.NANO_TIME) {
+            return;
+        }
+
+        LocalTimer timer = source == ClockSource.SPIN ? new LocalTimer() :
+                           new LocalTimer(resolution);
+        try {
+            timer.startTimeUpdateLoop();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        LOCAL_TIMER = timer;
+
+        if (!LIGHT_WATCH) {
+            NormalStopwatch.initEachWastedLost();
+        }
+    }
+
+    public static ClockSource clock() {
+        LocalTimer timer = LOCAL_TIMER;
+        if (timer == null) {
+            return ClockSource.NANO_TIME;
+        }
+        return timer.resolution() == 0L ? ClockSource.SPIN :
+                                          ClockSource.COARSE;
     }
 
     public static void useLightStopwatch(boolean yes) {
@@ -133,6 +366,67 @@ public final class PerfUtil {
         LIGHT_WATCH = yes;
     }
 
+    /**
+     * Use HistogramStopwatch to report the percentiles of cost, it's
+     * ignored if light-stopwatch is used
+     */
+    public static void useHistogramStopwatch(boolean yes) {
+        if (yes != HISTOGRAM_WATCH) {
+            PerfUtil instance = INSTANCE.get();
+            boolean empty = instance == null || instance.empty();
+            String message = "Please call clear() before switching " +
+                             "histogram-stopwatch due to there is dirty watch";
+            com.baidu.hugegraph.util.E.checkArgument(empty, message);
+        }
+        HISTOGRAM_WATCH = yes;
+    }
+
+    /**
+     * Measure only 1 in `interval` calls of each watched site, the times
+     * and costs of the sampled calls are scaled back by the interval.
+     * The calls nested in a skipped call are skipped too.
+     * @param interval: 1 means measure all calls
+     */
+    public static void useSampling(int interval) {
+        com.baidu.hugegraph.util.E.checkArgument(interval > 0,
+                "The sample interval must be > 0, but got %s", interval);
+        SAMPLE_INTERVAL = interval;
+    }
+
+    /**
+     * Limit the measured cost of each watched site per second of a thread,
+     * the sample interval of the site is doubled each second when the cost
+     * exceeds the budget and halved when it's below half of the budget.
+     * @param budget: the nanoseconds per second, 0 means no limit
+     */
+    public static void useSamplingBudget(long budget) {
+        com.baidu.hugegraph.util.E.checkArgument(budget >= 0L,
+                "The sample budget must be >= 0, but got %s", budget);
+        SAMPLE_BUDGET = budget;
+    }
+
+    /**
+     * Get the id of a watched site by name, assign a new one if absent,
+     * the id is used by start(int) and end(int) to avoid string hashing.
+     */
+    public static synchronized int siteId(String name) {
+        com.baidu.hugegraph.util.E.checkArgumentNotNull(name,
+                "The site name can't be null");
+        Integer id = SITE_IDS.get(name);
+        if (id == null) {
+            id = SITE_NAMES.length;
+            String[] names = Arrays.copyOf(SITE_NAMES, id + 1);
+            names[id] = name.intern();
+            SITE_NAMES = names;
+            SITE_IDS.put(name, id);
+        }
+        return id;
+    }
+
+    public static String siteName(int id) {
+        return SITE_NAMES[id];
+    }
+
     protected static long now() {
         if (LOCAL_TIMER != null) {
             return LOCAL_TIMER.now();
@@ -142,18 +436,28 @@ public final class PerfUtil {
     }
 
     protected static Stopwatch newStopwatch(String name, Path parent) {
-        return LIGHT_WATCH ? new LightStopwatch(name, parent) :
-                             new NormalStopwatch(name, parent);
+        if (LIGHT_WATCH) {
+            return new LightStopwatch(name, parent);
+        }
+        return HISTOGRAM_WATCH ? new HistogramStopwatch(name, parent) :
+                                 new NormalStopwatch(name, parent);
     }
 
     protected static Stopwatch newStopwatch(String name, Stopwatch parent) {
-        return LIGHT_WATCH ? new LightStopwatch(name, parent) :
-                             new NormalStopwatch(name, parent);
+        if (LIGHT_WATCH) {
+            return new LightStopwatch(name, parent);
+        }
+        return HISTOGRAM_WATCH ? new HistogramStopwatch(name, parent) :
+                                 new NormalStopwatch(name, parent);
     }
 
     public Stopwatch start(String name) {
         long start = now();
 
+        if (this.callStack.empty()) {
+            this.enter();
+        }
+
         Stopwatch parent = this.callStack.empty() ?
                            this.root : this.callStack.peek();
 
@@ -162,7 +466,29 @@ public final class PerfUtil {
         if (watch == null) {
             watch = newStopwatch(name, parent);
             assert !this.stopwatches.containsKey(watch.id()) : watch;
-            this.stopwatches.put(watch.id(), watch);
+            this.addStopwatch(watch);
+        }
+        this.callStack.push(watch);
+
+        watch.startTime(start);
+
+        return watch;
+    }
+
+    public Stopwatch start(int id) {
+        long start = now();
+
+        if (this.callStack.empty()) {
+            this.enter();
+        }
+
+        Stopwatch parent = this.callStack.empty() ?
+                           this.root : this.callStack.peek();
+
+        // Get watch by site id from local tree
+        Stopwatch watch = parent.child(id);
+        if (watch == null) {
+            watch = this.newChild(parent, id);
         }
         this.callStack.push(watch);
 
@@ -174,6 +500,10 @@ public final class PerfUtil {
     public Stopwatch start2(String name) {
         long start = now(); // cost 70 ns with System.nanoTime()
 
+        if (this.callStack.empty()) {
+            this.enter();
+        }
+
         Path parent = this.callStack.empty() ?
                       Path.EMPTY : this.callStack.peek().id();
         Path id = Stopwatch.id(parent, name); // cost 130
@@ -181,7 +511,7 @@ public final class PerfUtil {
         Stopwatch watch = this.stopwatches.get(id); // cost 170
         if (watch == null) {
             watch = newStopwatch(name, parent);
-            this.stopwatches.put(watch.id(), watch); // cost 180
+            this.addStopwatch(watch); // cost 180
         }
         this.callStack.push(watch); // cost 190
 
@@ -199,6 +529,143 @@ public final class PerfUtil {
         }
 
         watch.endTime(start);
+
+        if (this.callStack.empty()) {
+            this.leave();
+        }
+    }
+
+    /**
+     * Start a watched call which may be skipped when sampling, called by
+     * the code injected into the @Watched methods
+     */
+    public void startWatched(int id) {
+        if (this.skipDepth > 0) {
+            this.skipDepth++;
+            return;
+        }
+        if (SAMPLE_INTERVAL == 1 && SAMPLE_BUDGET == 0L) {
+            this.start(id);
+            return;
+        }
+
+        long weight = this.sampler.sample(id);
+        if (weight == 0L) {
+            this.skipDepth = 1;
+            return;
+        }
+        // A sampled call stands for all skipped calls of its ancestors
+        int depth = this.callStack.size();
+        if (depth > 0 && this.weights != null) {
+            weight *= this.weights[depth - 1];
+        }
+        this.start(id);
+        if (weight != 1L) {
+            this.weights()[depth] = weight;
+        }
+    }
+
+    public void endWatched(int id) {
+        if (this.skipDepth > 0) {
+            this.skipDepth--;
+            return;
+        }
+
+        int depth = this.callStack.size();
+        long weight = 1L;
+        if (depth > 0 && this.weights != null) {
+            weight = this.weights[depth - 1];
+            this.weights[depth - 1] = 1L;
+        }
+        if (SAMPLE_BUDGET == 0L) {
+            this.end(id, weight);
+            return;
+        }
+
+        Stopwatch watch = this.callStack.peek();
+        long cost = watch.totalCost();
+        this.end(id, weight);
+        cost = (watch.totalCost() - cost) / weight;
+        this.sampler.consume(id, cost, now());
+    }
+
+    private long[] weights() {
+        if (this.weights == null) {
+            this.weights = new long[DEFAUL_CAPATICY];
+            Arrays.fill(this.weights, 1L);
+        }
+        return this.weights;
+    }
+
+    public void end(int id) {
+        this.end(id, 1L);
+    }
+
+    private void end(int id, long weight) {
+        long start = LIGHT_WATCH ? 0L : now();
+
+        Stopwatch watch = this.callStack.pop();
+        String name = SITE_NAMES[id];
+        if (watch == null || (watch.name() != name &&
+                              !watch.name().equals(name))) {
+            throw new IllegalArgumentException("Invalid watch name: " + name);
+        }
+
+        watch.endTime(start, weight);
+
+        if (this.callStack.empty()) {
+            this.leave();
+        }
+    }
+
+    private Stopwatch newChild(Stopwatch parent, int id) {
+        String name = SITE_NAMES[id];
+        // The watch may be started by name before
+        Stopwatch watch = parent.child(name);
+        if (watch == null) {
+            watch = newStopwatch(name, parent);
+            assert !this.stopwatches.containsKey(watch.id()) : watch;
+            this.addStopwatch(watch);
+        }
+        parent.child(id, watch);
+        return watch;
+    }
+
+    private void addStopwatch(Stopwatch watch) {
+        this.stopwatches.put(watch.id(), watch);
+        this.published = this.published.append(watch);
+    }
+
+    /**
+     * Enter the outermost call, wait if a snapshot is draining
+     */
+    private void enter() {
+        // It may be left BUSY by a call which failed to end
+        while (this.state != BUSY && !STATE.compareAndSet(this, IDLE, BUSY)) {
+            Thread.yield();
+        }
+        if (this.resetRequest != RESET_NONE) {
+            this.applyReset();
+        }
+    }
+
+    private void leave() {
+        if (this.resetRequest != RESET_NONE) {
+            this.applyReset();
+        }
+        this.state = IDLE;
+    }
+
+    private void applyReset() {
+        if (this.resetRequest == RESET_HAND_OVER) {
+            this.handovers.add(this.published);
+        }
+        this.reset();
+        this.resetRequest = RESET_NONE;
+    }
+
+    Collection<Stopwatch> stopwatches() {
+        return this.published.list();
     }
 
     public boolean empty() {
@@ -209,8 +676,15 @@ public final class PerfUtil {
         String error = "Can't be cleared when the call has not ended yet";
         com.baidu.hugegraph.util.E.checkState(this.callStack.empty(), error);
 
+        this.enter();
+        this.reset();
+        this.leave();
+    }
+
+    private void reset() {
         this.stopwatches.clear();
         this.root.clear();
+        this.published = Watches.EMPTY;
     }
 
     public void profilePackage(String... packages) throws Throwable {
@@ -270,12 +744,12 @@ public final class PerfUtil {
         }
     }
 
-    private void profile(CtMethod ctMethod)
-                         throws CannotCompileException, ClassNotFoundException {
-        final String START =
-                "com.baidu.hugegraph.perf.PerfUtil.instance().start(\"%s\");";
-        final String END =
-                "com.baidu.hugegraph.perf.PerfUtil.instance().end(\"%s\");";
+    static void profile(CtMethod ctMethod)
+                        throws CannotCompileException, ClassNotFoundException {
+        final String START = "com.baidu.hugegraph.perf.PerfUtil" +
+                             ".instance().startWatched(%s);";
+        final String END = "com.baidu.hugegraph.perf.PerfUtil" +
+                           ".instance().endWatched(%s);";
 
         Watched annotation = (Watched) ctMethod.getAnnotation(Watched.class);
 
@@ -287,9 +761,11 @@ public final class PerfUtil {
             name = annotation.prefix() + "." + name;
         }
 
-        ctMethod.insertBefore(String.format(START, name));
+        // Reference the site by id assigned when profiling
+        int id = siteId(name);
+        ctMethod.insertBefore(String.format(START, id));
         // Insert as a finally-statement
-        ctMethod.insertAfter(String.format(END, name), true);
+        ctMethod.insertAfter(String.format(END, id), true);
 
         LOG.debug("Profiled for: '{}' [{}]", name, ctMethod.getLongName());
     }
@@ -320,6 +796,91 @@ public final class PerfUtil {
         return sb.toString();
     }
 
+    /**
+     * Write the stopwatches in collapsed-stack format which can be rendered
+     * by flame-graph tools, one line `a;b;c self-cost` for each path.
+     * NOTE: it can be called from other thread for a snapshot() or merge()
+     */
+    public void toFlameGraph(Writer writer) throws IOException {
+        // Walk the stopwatches in depth-first order
+        Stopwatch[] watches = this.stopwatches.values()
+                                  .toArray(new Stopwatch[0]);
+        Arrays.sort(watches, (w1, w2) -> compareDepthFirst(w1.id(), w2.id()));
+
+        // The ancestors of current watch and the cost of their children
+        Stopwatch[] ancestors = new Stopwatch[16];
+        long[] childrenCosts = new long[ancestors.length];
+        int depth = 0;
+        for (Stopwatch watch : watches) {
+            while (depth > 0 &&
+                   !ancestors[depth - 1].id().equals(watch.parent())) {
+                depth--;
+                writeFlameLine(writer, ancestors[depth],
+                               childrenCosts[depth]);
+            }
+            if (depth > 0) {
+                childrenCosts[depth - 1] += watch.totalCost();
+            }
+            if (depth == ancestors.length) {
+                ancestors = Arrays.copyOf(ancestors, depth * 2);
+                childrenCosts = Arrays.copyOf(childrenCosts, depth * 2);
+            }
+            ancestors[depth] = watch;
+            childrenCosts[depth] = 0L;
+            depth++;
+        }
+        while (depth > 0) {
+            depth--;
+            writeFlameLine(writer, ancestors[depth], childrenCosts[depth]);
+        }
+        writer.flush();
+    }
+
+    private static void writeFlameLine(Writer writer, Stopwatch watch,
+                                       long childrenCost) throws IOException {
+        long self = watch.totalCost() - childrenCost;
+        if (self <= 0L) {
+            return;
+        }
+        String path = watch.id().toString();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/') {
+                c = ';';
+            } else if (c == ';' || Character.isWhitespace(c)) {
+                // They are the separators of collapsed-stack format
+                c = '_';
+            }
+            writer.write(c);
+        }
+        writer.write(' ');
+        writer.write(Long.toString(self));
+        writer.write('\n');
+    }
+
+    /**
+     * Compare the paths by segments, so that a path is followed by all
+     * its descendants, like "a", "a/b", "a.c" rather than "a", "a.c", "a/b"
+     */
+    private static int compareDepthFirst(Path path1, Path path2) {
+        String p1 = path1.toString();
+        String p2 = path2.toString();
+        int length = Math.min(p1.length(), p2.length());
+        for (int i = 0; i < length; i++) {
+            char c1 = p1.charAt(i);
+            char c2 = p2.charAt(i);
+            if (c1 != c2) {
+                if (c1 == '/') {
+                    return -1;
+                } else if (c2 == '/') {
+                    return 1;
+                }
+                return c1 - c2;
+            }
+        }
+        return p1.length() - p2.length();
+    }
+
     // TODO: move toECharts() method out of this class
     public String toECharts() {
         TriFunction<Integer, Integer, List<Stopwatch>, String> formatLevel = (
@@ -493,8 +1054,112 @@ public final class PerfUtil {
         return sb.toString();
     }
 
+    /**
+     * The stopwatches published by the owner thread, which only appends
+     * to the array beyond the size, so the readers don't need any lock
+     */
+    private static final class Watches {
+
+        private static final Watches EMPTY = new Watches(new Stopwatch[0],
+                                                         0);
+
+        private final Stopwatch[] array;
+        private final int size;
+
+        private Watches(Stopwatch[] array, int size) {
+            this.array = array;
+            this.size = size;
+        }
+
+        public Watches append(Stopwatch watch) {
+            Stopwatch[] array = this.array;
+            if (this.size == array.length) {
+                int capacity = Math.max(DEFAUL_CAPATICY, this.size * 2);
+                array = Arrays.copyOf(array, capacity);
+            }
+            array[this.size] = watch;
+            return new Watches(array, this.size + 1);
+        }
+
+        public List<Stopwatch> list() {
+            return Collections.unmodifiableList(
+                   Arrays.asList(this.array).subList(0, this.size));
+        }
+    }
+
+    private static final class Sampler {
+
+        private static final long WINDOW = TimeUnit.SECONDS.toNanos(1L);
+        private static final int MAX_INTERVAL = 1 << 20;
+
+        // The states of each site indexed by the site id
+        private int[] counters = new int[0];
+        private int[] intervals = new int[0];
+        private long[] windowStarts = new long[0];
+        private long[] windowCosts = new long[0];
+
+        /**
+         * Return the interval if the call is sampled, otherwise return 0
+         */
+        public long sample(int id) {
+            if (id >= this.counters.length) {
+                this.grow(id);
+            }
+            int interval = SAMPLE_BUDGET > 0L ?
+                           this.intervals[id] : SAMPLE_INTERVAL;
+            if (++this.counters[id] < interval) {
+                return 0L;
+            }
+            this.counters[id] = 0;
+            return interval;
+        }
+
+        public void consume(int id, long cost, long now) {
+            if (this.windowStarts[id] == 0L) {
+                this.windowStarts[id] = now;
+            }
+            this.windowCosts[id] += cost;
+            long elapsed = now - this.windowStarts[id];
+            if (elapsed < WINDOW) {
+                return;
+            }
+            // The measured cost per second in the window
+            double spent = (double) this.windowCosts[id] * WINDOW / elapsed;
+            int interval = this.intervals[id];
+            if (spent > SAMPLE_BUDGET && interval < MAX_INTERVAL) {
+                this.intervals[id] = interval << 1;
+            } else if (spent < SAMPLE_BUDGET / 2.0 && interval > 1) {
+                this.intervals[id] = interval >> 1;
+            }
+            this.windowStarts[id] = now;
+            this.windowCosts[id] = 0L;
+        }
+
+        private void grow(int id) {
+            int size = Math.max(id + 1, this.counters.length * 2);
+            int oldSize = this.intervals.length;
+            this.counters = Arrays.copyOf(this.counters, size);
+            this.intervals = Arrays.copyOf(this.intervals, size);
+            Arrays.fill(this.intervals, oldSize, size, 1);
+            this.windowStarts = Arrays.copyOf(this.windowStarts, size);
+            this.windowCosts = Arrays.copyOf(this.windowCosts, size);
+        }
+    }
+
+    public enum ClockSource {
+
+        // Call System.nanoTime() each time
+        NANO_TIME,
+        // Read the time updated by a thread which parks between updates
+        COARSE,
+        // Read the time updated by a thread which spins with yield
+        SPIN
+    }
+
     public static final class LocalTimer {
 
+        public static final long DEFAULT_RESOLUTION = 50000L;
+
         // Header: 4 bytes classptr + 8 bytes markword
         private volatile long padding11 = 0L;
         private volatile long padding12 = 0L;
@@ -515,6 +1180,21 @@ public final class PerfUtil {
 
         private volatile boolean running = false;
         private Thread thread = null;
+        // Spin if 0, otherwise park the nanoseconds between updates
+        private final long resolution;
+
+        public LocalTimer() {
+            this(0L);
+        }
+
+        public LocalTimer(long resolution) {
+            assert resolution >= 0L;
+            this.resolution = resolution;
+        }
+
+        public long resolution() {
+            return this.resolution;
+        }
 
         public long now() {
             // Read current ns time (be called frequently)
@@ -530,11 +1210,19 @@ public final class PerfUtil {
                 started.countDown();
                 while (this.running) {
                     this.time = System.nanoTime();
-                    // Prevent frequent updates for perf (5.2s => 3.6s for 8kw)
-                    Thread.yield();
+                    if (this.resolution > 0L) {
+                        LockSupport.parkNanos(this.resolution);
+                    } else {
+                        /*
+                         * Prevent frequent updates for perf
+                         * (5.2s => 3.6s for 8kw)
+                         */
+                        Thread.yield();
+                    }
                 }
             }, "LocalTimer");
             this.thread.setDaemon(true);
+            this.time = System.nanoTime();
             this.thread.start();
             started.await();
         }
@@ -665,6 +1353,18 @@ public final class PerfUtil {
             return this.hashMap.remove(key);
         }
 
+        public FastMap<K, V> copy() {
+            FastMap<K, V> copy = new FastMap<>();
+            copy.hashMap.putAll(this.hashMap);
+            copy.key1 = this.key1;
+            copy.key2 = this.key2;
+            copy.key3 = this.key3;
+            copy.val1 = this.val1;
+            copy.val2 = this.val2;
+            copy.val3 = this.val3;
+            return copy;
+        }
+
         public void clear() {
             this.key1 = null;
             this.key2 = null;
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.perf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.baidu.hugegraph.perf.PerfReporter.Metric;
+
+/**
+ * Accumulate the reported deltas as counters, and write them in the text
+ * format of Prometheus. The counters are written to the file after each
+ * report if specified, which can be scraped by the textfile collector of
+ * node-exporter, or call write() to serve them by http.
+ */
+public class PrometheusSink implements MetricsSink {
+
+    public static final String CALLS = "hugegraph_perf_calls_total";
+    public static final String COST = "hugegraph_perf_cost_seconds_total";
+
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+
+    private final Path file;
+    // The accumulated [times, total cost] of each path
+    private final Map<String, long[]> counters;
+
+    public PrometheusSink() {
+        this(null);
+    }
+
+    public PrometheusSink(String file) {
+        this.file = file == null ? null : Paths.get(file);
+        this.counters = new TreeMap<>();
+    }
+
+    @Override
+    public synchronized void report(long timestamp, List<Metric> metrics)
+                                    throws IOException {
+        for (Metric metric : metrics) {
+            String path = metric.path().toString();
+            long[] counter = this.counters.get(path);
+            if (counter == null) {
+                counter = new long[2];
+                this.counters.put(path, counter);
+            }
+            counter[0] += metric.times();
+            counter[1] += metric.totalCost();
+        }
+
+        if (this.file != null) {
+            // Replace the file atomically to avoid reading partial content
+            Path temp = this.file.resolveSibling(this.file.getFileName() +
+                                                 ".tmp");
+            try (Writer writer = Files.newBufferedWriter(
+                                 temp, StandardCharsets.UTF_8)) {
+                this.write(writer);
+            }
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    public synchronized void write(Writer writer) throws IOException {
+        writer.write("# HELP " + CALLS + " The number of calls.\n");
+        writer.write("# TYPE " + CALLS + " counter\n");
+        for (Map.Entry<String, long[]> e : this.counters.entrySet()) {
+            writeSample(writer, CALLS, e.getKey(),
+                        Long.toString(e.getValue()[0]));
+        }
+        writer.write("# HELP " + COST + " The total cost of calls.\n");
+        writer.write("# TYPE " + COST + " counter\n");
+        for (Map.Entry<String, long[]> e : this.counters.entrySet()) {
+            double cost = e.getValue()[1] / NANOS_PER_SECOND;
+            writeSample(writer, COST, e.getKey(), Double.toString(cost));
+        }
+        writer.flush();
+    }
+
+    private static void writeSample(Writer writer, String name,
+                                    String path, String value)
+                                    throws IOException {
+        writer.write(name);
+        writer.write("{path=\"");
+        for (int i = 0, n = path.length(); i < n; i++) {
+            char c = path.charAt(i);
+            if (c == '\\' || c == '"') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c == '\n') {
+                writer.write("\\n");
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write("\"} ");
+        writer.write(value);
+        writer.write('\n');
+    }
+}
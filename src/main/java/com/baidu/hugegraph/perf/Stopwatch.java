@@ -23,12 +23,21 @@ import java.util.List;
 
 public interface Stopwatch extends Cloneable {
 
+    public static final Stopwatch[] EMPTY_CHILDREN = new Stopwatch[0];
+
     public Path id();
     public String name();
     public Path parent();
 
     public void startTime(long startTime);
-    public void endTime(long startTime);
+    public default void endTime(long startTime) {
+        this.endTime(startTime, 1L);
+    }
+
+    /**
+     * End a call which stands for `weight` calls, used when sampling
+     */
+    public void endTime(long startTime, long weight);
 
     public void lastStartTime(long startTime);
 
@@ -48,11 +57,16 @@ public interface Stopwatch extends Cloneable {
 
     public void fillChildrenTotal(List<Stopwatch> children);
 
+    public void merge(Stopwatch other);
+
     public Stopwatch copy();
 
     public Stopwatch child(String name);
     public Stopwatch child(String name, Stopwatch watch);
 
+    public Stopwatch child(int id);
+    public Stopwatch child(int id, Stopwatch watch);
+
     public boolean empty();
     public void clear();
 
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.testutil;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.baidu.hugegraph.util.E;
+
+/**
+ * Measure the bytes allocated by the current thread per operation, used
+ * to guard the hot paths which are expected to allocate nothing or little
+ */
+public final class AllocationMeter {
+
+    private static final int ROUNDS = 3;
+
+    private static final ThreadMXBean BEAN =
+                                      ManagementFactory.getThreadMXBean();
+
+    public static boolean supported() {
+        if (!(BEAN instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean bean =
+                                        (com.sun.management.ThreadMXBean) BEAN;
+        return bean.isThreadAllocatedMemorySupported() &&
+               bean.isThreadAllocatedMemoryEnabled();
+    }
+
+    public static long allocatedBytes() {
+        E.checkState(supported(),
+                     "The allocated memory of thread is not supported");
+        long id = Thread.currentThread().getId();
+        return ((com.sun.management.ThreadMXBean) BEAN)
+               .getThreadAllocatedBytes(id);
+    }
+
+    /**
+     * Run the operation `ops` times for warm up (to let JIT compile it),
+     * then measure several rounds of `ops` times and return the minimum
+     * bytes per operation of the rounds.
+     */
+    public static double bytesPerOp(int ops, Runnable operation) {
+        E.checkArgument(ops > 0, "The ops must be > 0, but got %s", ops);
+        for (int i = 0; i < ops; i++) {
+            operation.run();
+        }
+        double min = Double.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) {
+            long begin = allocatedBytes();
+            for (int i = 0; i < ops; i++) {
+                operation.run();
+            }
+            double bytes = (double) (allocatedBytes() - begin) / ops;
+            min = Math.min(min, bytes);
+        }
+        return min;
+    }
+
+    /**
+     * Assert the bytes per operation don't exceed the baseline, the
+     * measurement may be a little higher than the real value due to
+     * the meter itself, so a tolerance of 10% plus 1 byte is allowed.
+     */
+    public static void assertBytesPerOp(String name, double baseline,
+                                        int ops, Runnable operation) {
+        double actual = bytesPerOp(ops, operation);
+        if (actual > baseline * 1.1 + 1.0) {
+            Assert.fail(String.format(
+                        "Allocation regression of '%s': %.2f bytes/op, " +
+                        "but the baseline is %.2f bytes/op",
+                        name, actual, baseline));
+        }
+    }
+}
@@ -50,18 +50,36 @@ public final class E {
                                     elem, owner);
     }
 
+    /**
+     * Avoid allocating the empty varargs array on hot paths
+     */
+    public static void checkArgument(boolean expression,
+                                     @Nullable String message) {
+        Preconditions.checkArgument(expression, message);
+    }
+
     public static void checkArgument(boolean expression,
                                      @Nullable String message,
                                      @Nullable Object... args) {
         Preconditions.checkArgument(expression, message, args);
     }
 
+    public static void checkArgumentNotNull(Object object,
+                                            @Nullable String message) {
+        Preconditions.checkArgument(object != null, message);
+    }
+
     public static void checkArgumentNotNull(Object object,
                                             @Nullable String message,
                                             @Nullable Object... args) {
         Preconditions.checkArgument(object != null, message, args);
     }
 
+    public static void checkState(boolean expression,
+                                  @Nullable String message) {
+        Preconditions.checkState(expression, message);
+    }
+
     public static void checkState(boolean expression,
                                   @Nullable String message,
                                   @Nullable Object... args) {
@@ -19,26 +19,60 @@
 
 package com.baidu.hugegraph.util;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
 
+import com.baidu.hugegraph.concurrent.ExecutorMetrics;
+import com.baidu.hugegraph.concurrent.MetricsForkJoinPool;
+import com.baidu.hugegraph.concurrent.MetricsThreadPoolExecutor;
 import com.baidu.hugegraph.concurrent.PausableScheduledThreadPool;
+import com.baidu.hugegraph.concurrent.ThreadPerTaskExecutor;
 
 public final class ExecutorUtil {
 
+    private static final Logger LOG = Log.logger(ExecutorUtil.class);
+
+    private static final long KEEP_ALIVE_TIME = 60_000L;
+
+    // The factory of virtual thread executor, null if not supported
+    private static final Method VIRTUAL_EXECUTOR = virtualExecutorMethod();
+
     public static ExecutorService newFixedThreadPool(String name) {
         return newFixedThreadPool(1, name);
     }
 
     public static ExecutorService newFixedThreadPool(int size, String name) {
-        ThreadFactory factory = new BasicThreadFactory.Builder()
-                                                      .namingPattern(name)
-                                                      .build();
-        return Executors.newFixedThreadPool(size, factory);
+        return Executors.newFixedThreadPool(size, threadFactory(name));
+    }
+
+    public static MetricsThreadPoolExecutor newMetricsThreadPool(String name) {
+        return newMetricsThreadPool(1, name);
+    }
+
+    /**
+     * Create a fixed pool which records the latency of tasks, NOTE: the
+     * tasks are wrapped, so the elements of getQueue() are not the
+     * submitted ones, use remove() or shutdownNow() to get them back.
+     */
+    public static MetricsThreadPoolExecutor newMetricsThreadPool(int size,
+                                                                 String name) {
+        return new MetricsThreadPoolExecutor(size, size, 0L,
+                                             new LinkedBlockingQueue<>(),
+                                             threadFactory(name),
+                                             new ThreadPoolExecutor
+                                                 .AbortPolicy());
     }
 
     public static ScheduledExecutorService newScheduledThreadPool(String name) {
@@ -47,10 +81,7 @@ public final class ExecutorUtil {
 
     public static ScheduledExecutorService newScheduledThreadPool(int size,
                                                                   String name) {
-        ThreadFactory factory = new BasicThreadFactory.Builder()
-                                                      .namingPattern(name)
-                                                      .build();
-        return Executors.newScheduledThreadPool(size, factory);
+        return Executors.newScheduledThreadPool(size, threadFactory(name));
     }
 
     public static PausableScheduledThreadPool newPausableScheduledThreadPool(
@@ -60,9 +91,116 @@ public final class ExecutorUtil {
 
     public static PausableScheduledThreadPool newPausableScheduledThreadPool(
                                               int size, String name) {
-        ThreadFactory factory = new BasicThreadFactory.Builder()
-                                                      .namingPattern(name)
-                                                      .build();
-        return new PausableScheduledThreadPool(size, factory);
+        return new PausableScheduledThreadPool(size, threadFactory(name));
+    }
+
+    public static MetricsForkJoinPool newWorkStealingPool(String name) {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        return newWorkStealingPool(parallelism, name);
+    }
+
+    public static MetricsForkJoinPool newWorkStealingPool(int parallelism,
+                                                          String name) {
+        E.checkArgument(parallelism > 0,
+                        "The parallelism must be > 0, but got %s",
+                        parallelism);
+        return new MetricsForkJoinPool(parallelism, name);
+    }
+
+    public static MetricsThreadPoolExecutor newBoundedThreadPool(
+                                            int size, int capacity,
+                                            String name) {
+        return newBoundedThreadPool(size, capacity, name,
+                                    new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Create a pool with bounded queue, the handler is called when the
+     * queue is full, like CallerRunsPolicy or BlockingRejectedPolicy for
+     * backpressure.
+     */
+    public static MetricsThreadPoolExecutor newBoundedThreadPool(
+                                            int size, int capacity,
+                                            String name,
+                                            RejectedExecutionHandler handler) {
+        E.checkArgument(size > 0,
+                        "The pool size must be > 0, but got %s", size);
+        E.checkArgument(capacity > 0,
+                        "The queue capacity must be > 0, but got %s",
+                        capacity);
+        E.checkNotNull(handler, "handler");
+        return new MetricsThreadPoolExecutor(size, size, 0L,
+                                             new ArrayBlockingQueue<>(capacity),
+                                             threadFactory(name), handler);
+    }
+
+    /**
+     * Create an executor which starts a virtual thread for each task if
+     * supported by the jdk, otherwise a platform thread from cached pool.
+     */
+    public static ExecutorService newVirtualThreadExecutor(String name) {
+        if (VIRTUAL_EXECUTOR != null) {
+            try {
+                ThreadFactory factory = virtualThreadFactory(name);
+                ExecutorService executor = (ExecutorService)
+                                           VIRTUAL_EXECUTOR.invoke(null,
+                                                                   factory);
+                return new ThreadPerTaskExecutor(executor);
+            } catch (ReflectiveOperationException e) {
+                LOG.warn("Failed to create virtual thread executor", e);
+            }
+        }
+        return new MetricsThreadPoolExecutor(0, Integer.MAX_VALUE,
+                                             KEEP_ALIVE_TIME,
+                                             new SynchronousQueue<>(),
+                                             threadFactory(name),
+                                             new ThreadPoolExecutor
+                                                 .AbortPolicy());
+    }
+
+    public static boolean supportVirtualThread() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * Decorate the executor to record the wait/execution time histograms
+     * and rejection count of tasks, registered by the pool name.
+     */
+    public static InstrumentedExecutorService instrument(
+                                              String name,
+                                              ExecutorService executor) {
+        return new InstrumentedExecutorService(name, executor);
+    }
+
+    public static ExecutorMetrics metrics(Executor executor) {
+        E.checkArgument(executor instanceof ExecutorMetrics,
+                        "The executor %s doesn't support metrics",
+                        executor);
+        return (ExecutorMetrics) executor;
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        return new BasicThreadFactory.Builder().namingPattern(name).build();
+    }
+
+    private static ThreadFactory virtualThreadFactory(String name)
+                                 throws ReflectiveOperationException {
+        // Thread.ofVirtual().name(prefix, 0L).factory()
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        Class<?> clazz = Class.forName("java.lang.Thread$Builder");
+        String prefix = name.replace("%d", "");
+        builder = clazz.getMethod("name", String.class, long.class)
+                       .invoke(builder, prefix, 0L);
+        return (ThreadFactory) clazz.getMethod("factory").invoke(builder);
+    }
+
+    private static Method virtualExecutorMethod() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return Executors.class.getMethod("newThreadPerTaskExecutor",
+                                             ThreadFactory.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative long values with log-linear
+ * buckets like HdrHistogram: the values less than 2^SUB_BITS are counted
+ * exactly, and each power-of-two range above is split into 2^SUB_BITS
+ * sub-buckets, so the relative error of percentiles is less than 1/32.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_COUNT;
+
+    private static final double[] PERCENTILES = {50D, 90D, 99D, 99.9D};
+    private static final String[] PERCENTILE_NAMES = {
+            "p50", "p90", "p99", "p999"
+    };
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong min;
+    private final AtomicLong max;
+
+    public Histogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.min = new AtomicLong(Long.MAX_VALUE);
+        this.max = new AtomicLong(0L);
+    }
+
+    public void record(long value) {
+        if (value < 0L) {
+            value = 0L;
+        }
+        this.buckets.incrementAndGet(index(value));
+        this.count.increment();
+        this.sum.add(value);
+        // Read before CAS to avoid contention on the min/max value
+        if (value < this.min.get()) {
+            this.min.accumulateAndGet(value, Math::min);
+        }
+        if (value > this.max.get()) {
+            this.max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long count() {
+        return this.count.sum();
+    }
+
+    public long sum() {
+        return this.sum.sum();
+    }
+
+    public long min() {
+        long min = this.min.get();
+        return min == Long.MAX_VALUE ? 0L : min;
+    }
+
+    public long max() {
+        return this.max.get();
+    }
+
+    public long mean() {
+        long count = this.count.sum();
+        return count == 0L ? 0L : this.sum.sum() / count;
+    }
+
+    /**
+     * @param percentile: the percentile in range [0, 100]
+     * @return The highest value of the bucket where the percentile is
+     */
+    public long percentile(double percentile) {
+        return this.percentiles(percentile)[0];
+    }
+
+    public long[] percentiles(double... percentiles) {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return percentiles(counts, this.max.get(), percentiles);
+    }
+
+    /**
+     * Add all the values of other histogram to this one.
+     */
+    public void merge(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.buckets.get(i);
+            if (count > 0L) {
+                this.buckets.addAndGet(i, count);
+            }
+        }
+        this.count.add(other.count.sum());
+        this.sum.add(other.sum.sum());
+        this.min.accumulateAndGet(other.min.get(), Math::min);
+        this.max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Clear the recorded values, NOTE: the values recorded concurrently
+     * may be lost partly.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0L);
+        }
+        this.count.reset();
+        this.sum.reset();
+        this.min.set(Long.MAX_VALUE);
+        this.max.set(0L);
+    }
+
+    public String toJson() {
+        long[] values = this.percentiles(PERCENTILES);
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{");
+        sb.append("\"count\":").append(this.count());
+        sb.append(",\"min\":").append(this.min());
+        sb.append(",\"max\":").append(this.max());
+        sb.append(",\"mean\":").append(this.mean());
+        for (int i = 0; i < values.length; i++) {
+            sb.append(",\"").append(PERCENTILE_NAMES[i]).append("\":")
+              .append(values[i]);
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.toJson();
+    }
+
+    /**
+     * Compute the percentiles from the counts of buckets
+     * @param counts: the counts indexed by index(value), may be shorter
+     *                than the max buckets
+     * @param max: the max value recorded, used to cap the results
+     */
+    public static long[] percentiles(long[] counts, long max,
+                                     double... percentiles) {
+        for (double percentile : percentiles) {
+            E.checkArgument(percentile >= 0D && percentile <= 100D,
+                            "The percentile must be in [0, 100], " +
+                            "but got %s", percentile);
+        }
+        long total = 0L;
+        for (long count : counts) {
+            total += count;
+        }
+        long[] values = new long[percentiles.length];
+        if (total == 0L) {
+            return values;
+        }
+        for (int p = 0; p < percentiles.length; p++) {
+            long rank = Math.max(1L, (long) Math.ceil(
+                                     percentiles[p] / 100D * total));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    values[p] = Math.min(highestValue(i), max);
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return The bucket index of the value, the value must be >= 0
+     */
+    public static int index(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        int sub = (int) (value >>> shift) - SUB_COUNT;
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    public static long lowestValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT;
+        return (SUB_COUNT + sub) << shift;
+    }
+
+    public static long highestValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        return lowestValue(index) + (1L << shift) - 1L;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+/**
+ * An executor decorator which records the wait time(from submitted to
+ * started) and execution time of each task in nanoseconds, and the count
+ * of rejected tasks. The instances are registered by pool name until
+ * shutdown, call InstrumentedExecutorService.toJsonAll() to export them.
+ * The pool name must be unique among the registered instances.
+ */
+public class InstrumentedExecutorService extends AbstractExecutorService {
+
+    private static final Map<String, InstrumentedExecutorService> INSTANCES =
+                         new ConcurrentHashMap<>();
+
+    private final String name;
+    private final ExecutorService executor;
+
+    private final Histogram waitTime;
+    private final Histogram execTime;
+    private final LongAdder submitted;
+    private final LongAdder rejected;
+
+    public InstrumentedExecutorService(String name, ExecutorService executor) {
+        E.checkArgumentNotNull(name, "The pool name can't be null");
+        E.checkArgumentNotNull(executor, "The executor can't be null");
+        this.name = name;
+        this.executor = executor;
+        this.waitTime = new Histogram();
+        this.execTime = new Histogram();
+        this.submitted = new LongAdder();
+        this.rejected = new LongAdder();
+        InstrumentedExecutorService exist = INSTANCES.putIfAbsent(name, this);
+        E.checkArgument(exist == null,
+                        "The executor '%s' has been registered", name);
+    }
+
+    public static InstrumentedExecutorService instance(String name) {
+        return INSTANCES.get(name);
+    }
+
+    public static Map<String, InstrumentedExecutorService> instances() {
+        return Collections.unmodifiableMap(INSTANCES);
+    }
+
+    public static String toJsonAll() {
+        StringBuilder sb = new StringBuilder(8 + INSTANCES.size() * 512);
+        sb.append('{');
+        for (InstrumentedExecutorService executor : INSTANCES.values()) {
+            sb.append('"').append(escape(executor.name)).append('"');
+            sb.append(':');
+            sb.append(executor.toJson());
+            sb.append(',');
+        }
+        if (sb.length() > 1) {
+            sb.deleteCharAt(sb.length() - 1);
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    public String name() {
+        return this.name;
+    }
+
+    public ExecutorService executor() {
+        return this.executor;
+    }
+
+    public Histogram waitTime() {
+        return this.waitTime;
+    }
+
+    public Histogram execTime() {
+        return this.execTime;
+    }
+
+    public long submitted() {
+        return this.submitted.sum();
+    }
+
+    public long rejected() {
+        return this.rejected.sum();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        E.checkNotNull(task, "task");
+        this.submitted.increment();
+        try {
+            this.executor.execute(new InstrumentedTask(task));
+        } catch (RejectedExecutionException e) {
+            this.rejected.increment();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        INSTANCES.remove(this.name, this);
+        this.executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        INSTANCES.remove(this.name, this);
+        List<Runnable> tasks = this.executor.shutdownNow();
+        List<Runnable> results = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            if (task instanceof InstrumentedTask) {
+                task = ((InstrumentedTask) task).task;
+            }
+            results.add(task);
+        }
+        return results;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+                                    throws InterruptedException {
+        return this.executor.awaitTermination(timeout, unit);
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{");
+        sb.append("\"name\":\"").append(escape(this.name)).append("\"");
+        sb.append(",\"submitted\":").append(this.submitted());
+        sb.append(",\"rejected\":").append(this.rejected());
+        sb.append(",\"wait_time\":").append(this.waitTime.toJson());
+        sb.append(",\"exec_time\":").append(this.execTime.toJson());
+        sb.append("}");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.toJson();
+    }
+
+    private static char[] escape(String value) {
+        return JsonStringEncoder.getInstance().quoteAsString(value);
+    }
+
+    private final class InstrumentedTask implements Runnable {
+
+        private final Runnable task;
+        private final long submitTime;
+
+        public InstrumentedTask(Runnable task) {
+            this.task = task;
+            this.submitTime = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.nanoTime();
+            InstrumentedExecutorService.this.waitTime.record(
+                                        startTime - this.submitTime);
+            try {
+                this.task.run();
+            } finally {
+                InstrumentedExecutorService.this.execTime.record(
+                                            System.nanoTime() - startTime);
+            }
+        }
+    }
+}
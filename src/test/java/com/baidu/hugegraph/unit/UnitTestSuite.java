@@ -30,12 +30,14 @@ import com.baidu.hugegraph.unit.concurrent.KeyLockTest;
 import com.baidu.hugegraph.unit.concurrent.LockGroupTest;
 import com.baidu.hugegraph.unit.concurrent.LockManagerTest;
 import com.baidu.hugegraph.unit.concurrent.PausableScheduledThreadPoolTest;
+import com.baidu.hugegraph.unit.concurrent.ReadWriteKeyLockTest;
 import com.baidu.hugegraph.unit.concurrent.RowLockTest;
 import com.baidu.hugegraph.unit.config.HugeConfigTest;
 import com.baidu.hugegraph.unit.config.OptionSpaceTest;
 import com.baidu.hugegraph.unit.date.SafeDateFormatTest;
 import com.baidu.hugegraph.unit.event.EventHubTest;
 import com.baidu.hugegraph.unit.iterator.BatchMapperIteratorTest;
+import com.baidu.hugegraph.unit.iterator.CIterSpliteratorTest;
 import com.baidu.hugegraph.unit.iterator.ExtendableIteratorTest;
 import com.baidu.hugegraph.unit.iterator.FilterIteratorTest;
 import com.baidu.hugegraph.unit.iterator.FlatMapperFilterIteratorTest;
@@ -48,6 +50,9 @@ import com.baidu.hugegraph.unit.license.LicenseCreateParamTest;
 import com.baidu.hugegraph.unit.license.LicenseManagerTest;
 import com.baidu.hugegraph.unit.license.LicenseVerifyParamTest;
 import com.baidu.hugegraph.unit.license.MachineInfoTest;
+import com.baidu.hugegraph.unit.perf.AllocationTest;
+import com.baidu.hugegraph.unit.perf.PerfAgentTest;
+import com.baidu.hugegraph.unit.perf.PerfReporterTest;
 import com.baidu.hugegraph.unit.perf.PerfUtilTest;
 import com.baidu.hugegraph.unit.perf.StopwatchTest;
 import com.baidu.hugegraph.unit.rest.RestClientTest;
@@ -56,8 +61,11 @@ import com.baidu.hugegraph.unit.util.BytesTest;
 import com.baidu.hugegraph.unit.util.CollectionUtilTest;
 import com.baidu.hugegraph.unit.util.DateUtilTest;
 import com.baidu.hugegraph.unit.util.EcheckTest;
+import com.baidu.hugegraph.unit.util.ExecutorUtilTest;
 import com.baidu.hugegraph.unit.util.HashUtilTest;
+import com.baidu.hugegraph.unit.util.HistogramTest;
 import com.baidu.hugegraph.unit.util.InsertionOrderUtilTest;
+import com.baidu.hugegraph.unit.util.InstrumentedExecutorServiceTest;
 import com.baidu.hugegraph.unit.util.LogTest;
 import com.baidu.hugegraph.unit.util.LongEncodingTest;
 import com.baidu.hugegraph.unit.util.NumericUtilTest;
@@ -75,6 +83,7 @@ import com.baidu.hugegraph.unit.version.VersionTest;
     LockGroupTest.class,
     AtomicLockTest.class,
     KeyLockTest.class,
+    ReadWriteKeyLockTest.class,
     RowLockTest.class,
     PausableScheduledThreadPoolTest.class,
 
@@ -84,6 +93,9 @@ import com.baidu.hugegraph.unit.version.VersionTest;
     BarrierEventTest.class,
     EventHubTest.class,
     PerfUtilTest.class,
+    PerfAgentTest.class,
+    AllocationTest.class,
+    PerfReporterTest.class,
     StopwatchTest.class,
     RestClientTest.class,
     RestResultTest.class,
@@ -93,6 +105,7 @@ import com.baidu.hugegraph.unit.version.VersionTest;
     FilterIteratorTest.class,
     LimitIteratorTest.class,
     MapperIteratorTest.class,
+    CIterSpliteratorTest.class,
     FlatMapperIteratorTest.class,
     FlatMapperFilterIteratorTest.class,
     ListIteratorTest.class,
@@ -113,6 +126,9 @@ import com.baidu.hugegraph.unit.version.VersionTest;
     OrderLimitMapTest.class,
     DateUtilTest.class,
     UnitUtilTest.class,
+    ExecutorUtilTest.class,
+    HistogramTest.class,
+    InstrumentedExecutorServiceTest.class,
 
     ExtraParamTest.class,
     LicenseCreateParamTest.class,
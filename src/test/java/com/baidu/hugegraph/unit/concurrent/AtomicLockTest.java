@@ -19,6 +19,13 @@
 
 package com.baidu.hugegraph.unit.concurrent;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
 import com.baidu.hugegraph.concurrent.AtomicLock;
@@ -61,4 +68,138 @@ public class AtomicLockTest extends BaseUnitTest {
                                   "but got 11", e.getMessage());
         });
     }
+
+    @Test
+    public void testTryLockWithTimeout() throws Exception {
+        AtomicLock lock = new AtomicLock("lock");
+
+        Assert.assertTrue(lock.tryLock(0L));
+        try {
+            runWithThreads(2, () -> {
+                try {
+                    Assert.assertFalse(lock.tryLock(0L));
+                    Assert.assertFalse(lock.tryLock(10L));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+
+        // Wait for the lock released by other thread
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            Assert.assertTrue(lock.tryLock());
+            locked.countDown();
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException ignored) {
+                // pass
+            }
+            lock.unlock();
+        });
+        thread.start();
+        locked.await();
+        Assert.assertTrue(lock.tryLock(10000L));
+        lock.unlock();
+        thread.join();
+
+        // Not interrupted if the lock is free
+        Thread.currentThread().interrupt();
+        Assert.assertTrue(lock.tryLock(10L));
+        Assert.assertTrue(Thread.interrupted());
+        lock.unlock();
+        runWithThreads(1, () -> {
+            Assert.assertTrue(lock.tryLock());
+        });
+        Thread.currentThread().interrupt();
+        Assert.assertThrows(InterruptedException.class, () -> {
+            lock.tryLock(1000L);
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            lock.tryLock(-1L);
+        }, e -> {
+            Assert.assertContains("The timeout must be >= 0", e.getMessage());
+        });
+    }
+
+    @Test
+    public void testLockAsync() throws Exception {
+        AtomicLock lock = new AtomicLock("lock");
+
+        CompletableFuture<AtomicLock.Holder> future = lock.lockAsync();
+        Assert.assertTrue(future.isDone());
+        AtomicLock.Holder holder = future.get();
+        Assert.assertSame(lock, holder.lock());
+        Assert.assertFalse(lock.tryLock());
+        Assert.assertThrows(RuntimeException.class, () -> {
+            lock.unlock();
+        }, e -> {
+            Assert.assertContains("which is held by other threads now",
+                                  e.getMessage());
+        });
+
+        CompletableFuture<AtomicLock.Holder> future2 = lock.lockAsync();
+        CompletableFuture<AtomicLock.Holder> future3 = lock.lockAsync();
+        CompletableFuture<AtomicLock.Holder> future4 = lock.lockAsync();
+        Assert.assertFalse(future2.isDone());
+        Assert.assertTrue(future3.cancel(false));
+
+        // Unlock in other thread, then handed over to the next waiter
+        runWithThreads(1, holder::unlock);
+        AtomicLock.Holder holder2 = future2.get(10L, TimeUnit.SECONDS);
+        Assert.assertFalse(future4.isDone());
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            holder.unlock();
+        }, e -> {
+            Assert.assertContains("The lock 'lock' is not held by the holder",
+                                  e.getMessage());
+        });
+
+        holder2.unlock();
+        future4.get(10L, TimeUnit.SECONDS).unlock();
+
+        // Handed over after the thread unlocked
+        Assert.assertTrue(lock.tryLock());
+        CompletableFuture<AtomicLock.Holder> future5 = lock.lockAsync();
+        Assert.assertFalse(future5.isDone());
+        lock.unlock();
+        future5.get(10L, TimeUnit.SECONDS).unlock();
+
+        Assert.assertTrue(lock.tryLock());
+        lock.unlock();
+    }
+
+    @Test
+    public void testLockAsyncWithChainedWaiters() throws Exception {
+        AtomicLock lock = new AtomicLock("lock");
+        AtomicLock.Holder holder = lock.lockAsync().get();
+
+        // Each waiter unlocks in its dependent stage
+        int waiters = 10000;
+        AtomicInteger count = new AtomicInteger(0);
+        List<CompletableFuture<Void>> futures = new ArrayList<>(waiters);
+        for (int i = 0; i < waiters; i++) {
+            futures.add(lock.lockAsync().thenAccept(h -> {
+                count.incrementAndGet();
+                h.unlock();
+            }));
+        }
+        holder.unlock();
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                         .get(30L, TimeUnit.SECONDS);
+        Assert.assertEquals(waiters, count.get());
+        Assert.assertTrue(lock.tryLock());
+        lock.unlock();
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            lock.lockAsync(null);
+        }, e -> {
+            Assert.assertContains("The executor can't be null",
+                                  e.getMessage());
+        });
+    }
 }
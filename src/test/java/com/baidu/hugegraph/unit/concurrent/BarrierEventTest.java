@@ -132,6 +132,8 @@ public class BarrierEventTest {
         executorService.submit(() -> {
             try {
                 waitLatch.await();
+                // Wait for all the waiters to enter await()
+                Thread.sleep(100L);
             } catch (InterruptedException e) {
                 signalThreadInterruptedCount.incrementAndGet();
             }
@@ -268,4 +270,71 @@ public class BarrierEventTest {
         Assert.assertEquals(0, waitThreadInterruptedCount.get());
         Assert.assertEquals(0, signalThreadInterruptedCount.get());
     }
+
+    @Test(timeout = 5000)
+    public void testSignalAllWithResetImmediately()
+                throws InterruptedException {
+        BarrierEvent barrierEvent = new BarrierEvent();
+        AtomicInteger eventCount = new AtomicInteger(0);
+        CountDownLatch startLatch = new CountDownLatch(WAIT_THREADS_COUNT);
+        CountDownLatch endLatch = new CountDownLatch(WAIT_THREADS_COUNT);
+        for (int i = 0; i < WAIT_THREADS_COUNT; i++) {
+            new Thread(() -> {
+                try {
+                    startLatch.countDown();
+                    if (barrierEvent.await(3000L)) {
+                        eventCount.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    // Do nothing.
+                } finally {
+                    endLatch.countDown();
+                }
+            }).start();
+        }
+        startLatch.await();
+        Thread.sleep(100L);
+        // The waiters should not miss the signal even if reset at once
+        barrierEvent.signalAll();
+        barrierEvent.reset();
+        endLatch.await();
+        Assert.assertEquals(WAIT_THREADS_COUNT, eventCount.get());
+
+        // Reset before waiting
+        Assert.assertFalse(barrierEvent.await(1L));
+    }
+
+    @Test(timeout = 5000)
+    public void testAwaitWithInterrupted() throws InterruptedException {
+        BarrierEvent barrierEvent = new BarrierEvent();
+        AtomicInteger interruptedCount = new AtomicInteger(0);
+        Thread awaitThread = new Thread(() -> {
+            try {
+                barrierEvent.await();
+            } catch (InterruptedException e) {
+                interruptedCount.incrementAndGet();
+            }
+        });
+        awaitThread.start();
+        Thread.sleep(100L);
+        awaitThread.interrupt();
+        awaitThread.join();
+        Assert.assertEquals(1, interruptedCount.get());
+
+        // The cancelled waiter should not consume the signal
+        AtomicInteger eventCount = new AtomicInteger(0);
+        Thread awaitThread2 = new Thread(() -> {
+            try {
+                barrierEvent.await();
+                eventCount.incrementAndGet();
+            } catch (InterruptedException e) {
+                // Do nothing.
+            }
+        });
+        awaitThread2.start();
+        Thread.sleep(100L);
+        barrierEvent.signal();
+        awaitThread2.join();
+        Assert.assertEquals(1, eventCount.get());
+    }
 }
@@ -22,12 +22,16 @@ package com.baidu.hugegraph.unit.concurrent;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
 import com.baidu.hugegraph.concurrent.KeyLock;
+import com.baidu.hugegraph.concurrent.KeyLock.StripeStats;
 import com.baidu.hugegraph.testutil.Assert;
 import com.baidu.hugegraph.unit.BaseUnitTest;
+import com.google.common.collect.ImmutableList;
 
 public class KeyLockTest extends BaseUnitTest {
 
@@ -117,9 +121,293 @@ public class KeyLockTest extends BaseUnitTest {
         });
 
         Assert.assertThrows(IllegalArgumentException.class, () -> {
-            locks.unlockAll(null);
+            locks.unlockAll((List<Lock>) null);
         }, e -> {
             Assert.assertContains("Unlock locks can't be null", e.getMessage());
         });
     }
+
+    @Test
+    public void testLockUnlockAllWithHandle() {
+        KeyLock locks = new KeyLock();
+        KeyLock.Handle handle = new KeyLock.Handle(2);
+        Assert.assertFalse(handle.locked());
+        Assert.assertEquals(0, handle.size());
+
+        Assert.assertSame(handle, locks.lockAllWith(handle, "1", 2, 3, "1"));
+        Assert.assertTrue(handle.locked());
+        Assert.assertTrue(handle.size() >= 1 && handle.size() <= 3);
+        locks.unlockAll(handle);
+        Assert.assertFalse(handle.locked());
+        Assert.assertEquals(0, handle.size());
+
+        // Reuse the handle in other threads
+        runWithThreads(1, () -> {
+            locks.lockAllWith(handle, ImmutableList.of("1", 2, 3));
+            locks.unlockAll(handle);
+        });
+
+        // The same stripe is locked only once
+        KeyLock lock1 = new KeyLock(1);
+        lock1.lockAllWith(handle, "1", 2, 3);
+        Assert.assertEquals(1, handle.size());
+        lock1.unlockAll(handle);
+        Assert.assertEquals(1L, sum(lock1.stats(), StripeStats::acquires));
+        Assert.assertEquals(1, lock1.lockAll("1", 2, 3).size());
+        Assert.assertEquals(1, lock1.lockAll("1", 2).size());
+
+        locks.lockAllWith(handle, "1");
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            locks.lockAllWith(handle, "2");
+        }, e -> {
+            Assert.assertContains("The lock handle has been locked",
+                                  e.getMessage());
+        });
+        locks.unlockAll(handle);
+
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            locks.unlockAll(handle);
+        }, e -> {
+            Assert.assertContains("The lock handle has not been locked",
+                                  e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.lockAllWith(handle, "1", null);
+        }, e -> {
+            Assert.assertContains("Lock key can't be null", e.getMessage());
+        });
+        Assert.assertFalse(handle.locked());
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.lockAllWith(handle, new Object[0]);
+        }, e -> {
+            Assert.assertContains("Lock keys can't be null or empty",
+                                  e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.lockAllWith(handle, ImmutableList.of());
+        }, e -> {
+            Assert.assertContains("Lock keys can't be null or empty",
+                                  e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.lockAllWith(null, "1");
+        }, e -> {
+            Assert.assertContains("Lock handle can't be null",
+                                  e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.unlockAll((KeyLock.Handle) null);
+        }, e -> {
+            Assert.assertContains("Unlock handle can't be null",
+                                  e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new KeyLock.Handle(0);
+        }, e -> {
+            Assert.assertContains("The capacity must be > 0",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testTryLock() throws InterruptedException {
+        KeyLock locks = new KeyLock(1024);
+
+        Assert.assertTrue(locks.tryLock("1", 0L));
+        try {
+            runWithThreads(1, () -> {
+                try {
+                    Assert.assertFalse(locks.tryLock("1", 0L));
+                    Assert.assertFalse(locks.tryLock("1", 10L));
+                    Assert.assertTrue(locks.tryLock("2", 10L));
+                    locks.unlock("2");
+
+                    // None of the keys is locked if timed out
+                    Assert.assertNull(locks.tryLockAll(
+                                      ImmutableList.of("2", "1", "3"), 10L));
+                    KeyLock.Handle handle = new KeyLock.Handle();
+                    Assert.assertFalse(locks.tryLockAllWith(
+                                       handle, ImmutableList.of("3", "1"),
+                                       10L));
+                    Assert.assertFalse(handle.locked());
+
+                    Thread.currentThread().interrupt();
+                    Assert.assertThrows(InterruptedException.class, () -> {
+                        locks.tryLockAll(ImmutableList.of("2", "1"), 1000L);
+                    });
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } finally {
+            locks.unlock("1");
+        }
+
+        runWithThreads(1, () -> {
+            try {
+                // The keys are not held by the terminated thread
+                List<Lock> ls = locks.tryLockAll(
+                                ImmutableList.of("1", "2", "3"), 0L);
+                Assert.assertNotNull(ls);
+                locks.unlockAll(ls);
+
+                KeyLock.Handle handle = new KeyLock.Handle();
+                Assert.assertTrue(locks.tryLockAllWith(
+                                  handle, ImmutableList.of("3", "1"), 0L));
+                Assert.assertEquals(2, handle.size());
+                locks.unlockAll(handle);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.tryLock(null, 0L);
+        }, e -> {
+            Assert.assertContains("Lock key can't be null", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.tryLock("1", -1L);
+        }, e -> {
+            Assert.assertContains("The timeout must be >= 0", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.tryLockAll(ImmutableList.of(), 0L);
+        }, e -> {
+            Assert.assertContains("Lock keys can't be null or empty",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testStats() {
+        KeyLock locks = new KeyLock(4);
+        Assert.assertEquals(4, locks.size());
+        Assert.assertEquals(4, locks.stats().size());
+
+        locks.lock("1");
+        locks.lock("1");
+        locks.unlock("1");
+        locks.unlock("1");
+        locks.unlockAll(locks.lockAll("1", "1"));
+
+        List<StripeStats> stats = locks.stats();
+        // The same stripe is locked only once by lockAll()
+        Assert.assertEquals(3L, sum(stats, StripeStats::acquires));
+        Assert.assertEquals(0L, sum(stats, StripeStats::waits));
+        Assert.assertEquals(0L, sum(stats, StripeStats::waitTime));
+        Assert.assertEquals(0L, sum(stats, s -> (long) s.queueLength()));
+
+        Assert.assertEquals(8, new KeyLock(5).size());
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new KeyLock(0);
+        }, e -> {
+            Assert.assertContains("The size of KeyLock must be > 0",
+                                  e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new KeyLock(4, 2, 1);
+        }, e -> {
+            Assert.assertContains("The max size of KeyLock must be >= size",
+                                  e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new KeyLock(4, 4, 0);
+        }, e -> {
+            Assert.assertContains("The contention threshold must be > 0",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testGrowWithContention() throws InterruptedException {
+        KeyLock locks = new KeyLock(1, 2, 1);
+        Assert.assertEquals(1, locks.size());
+
+        locks.lock("1");
+        Thread thread = new Thread(() -> {
+            locks.lock("2");
+            locks.unlock("2");
+        });
+        try {
+            thread.start();
+            while (locks.stats().get(0).queueLength() == 0) {
+                Thread.sleep(1L);
+            }
+        } finally {
+            locks.unlock("1");
+        }
+        thread.join();
+
+        // Grown when "2" is unlocked by the thread
+        Assert.assertEquals(2, locks.size());
+        Assert.assertEquals(0L, sum(locks.stats(), StripeStats::acquires));
+
+        // Can't grow any more
+        locks.lock("1");
+        Thread thread2 = new Thread(() -> {
+            locks.lock("1");
+            locks.unlock("1");
+        });
+        try {
+            thread2.start();
+            while (sum(locks.stats(), s -> (long) s.queueLength()) == 0L) {
+                Thread.sleep(1L);
+            }
+        } finally {
+            locks.unlock("1");
+        }
+        thread2.join();
+        Assert.assertEquals(2, locks.size());
+        Assert.assertEquals(1L, sum(locks.stats(), StripeStats::waits));
+    }
+
+    @Test
+    public void testGrowWhileHoldingOthers() throws InterruptedException {
+        KeyLock locks = new KeyLock(1, 4, 1);
+
+        int[] sizes = new int[1];
+        locks.lock("1");
+        Thread thread = new Thread(() -> {
+            locks.lock("2");
+            locks.lock("3");
+            locks.unlock("3");
+            // Can't grow since "2" is still held by the thread
+            sizes[0] = locks.size();
+            locks.unlock("2");
+        });
+        try {
+            thread.start();
+            while (locks.stats().get(0).queueLength() == 0) {
+                Thread.sleep(1L);
+            }
+        } finally {
+            locks.unlock("1");
+        }
+        thread.join();
+        Assert.assertEquals(1, sizes[0]);
+
+        // Retry growing after the retry interval
+        Thread.sleep(200L);
+        locks.lock("1");
+        locks.unlock("1");
+        Assert.assertEquals(2, locks.size());
+    }
+
+    private static long sum(List<StripeStats> stats,
+                            Function<StripeStats, Long> mapper) {
+        return stats.stream().map(mapper)
+                    .collect(Collectors.summingLong(Long::longValue));
+    }
 }
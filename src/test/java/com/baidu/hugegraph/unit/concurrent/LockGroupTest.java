@@ -19,6 +19,7 @@
 
 package com.baidu.hugegraph.unit.concurrent;
 
+import java.lang.ref.WeakReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -29,6 +30,7 @@ import org.junit.Test;
 import com.baidu.hugegraph.concurrent.AtomicLock;
 import com.baidu.hugegraph.concurrent.KeyLock;
 import com.baidu.hugegraph.concurrent.LockGroup;
+import com.baidu.hugegraph.concurrent.ReadWriteKeyLock;
 import com.baidu.hugegraph.concurrent.RowLock;
 import com.baidu.hugegraph.testutil.Assert;
 import com.baidu.hugegraph.unit.BaseUnitTest;
@@ -93,6 +95,23 @@ public class LockGroupTest extends BaseUnitTest {
         Assert.assertSame(lock, lock1);
     }
 
+    @Test
+    public void testReadWriteKeyLock() {
+        ReadWriteKeyLock lock = this.group.readWriteKeyLock("lock");
+        Assert.assertNotNull(lock);
+        ReadWriteKeyLock lock1 = this.group.readWriteKeyLock("lock");
+        Assert.assertSame(lock, lock1);
+    }
+
+    @Test
+    public void testReadWriteKeyLockWithSize() {
+        ReadWriteKeyLock lock = this.group.readWriteKeyLock("lock", 10);
+        Assert.assertNotNull(lock);
+        Assert.assertEquals(16, lock.size());
+        ReadWriteKeyLock lock1 = this.group.readWriteKeyLock("lock");
+        Assert.assertSame(lock, lock1);
+    }
+
     @Test
     public void testRowLock() {
         RowLock<?> lock = this.group.rowLock("lock");
@@ -101,6 +120,153 @@ public class LockGroupTest extends BaseUnitTest {
         Assert.assertSame(lock, lock1);
     }
 
+    @Test
+    public void testLocksOfDifferentKinds() {
+        Lock lock = this.group.lock("lock");
+        KeyLock keyLock = this.group.keyLock("lock");
+        RowLock<String> rowLock = this.group.rowLock("lock");
+        Assert.assertNotNull(lock);
+        Assert.assertNotNull(keyLock);
+        Assert.assertNotNull(rowLock);
+        Assert.assertSame(lock, this.group.lock("lock"));
+        Assert.assertSame(keyLock, this.group.keyLock("lock"));
+        Assert.assertSame(rowLock, this.group.rowLock("lock"));
+        Assert.assertEquals(3, this.group.size());
+    }
+
+    @Test
+    public void testEvictIdle() {
+        Lock lock = this.group.lock("lock1");
+        AtomicLock atomicLock = this.group.atomicLock("lock2");
+        ReadWriteLock rwLock = this.group.readWriteLock("lock3");
+        KeyLock keyLock = this.group.keyLock("lock4");
+        ReadWriteKeyLock rwKeyLock = this.group.readWriteKeyLock("lock5");
+        RowLock<String> rowLock = this.group.rowLock("lock6");
+        Assert.assertEquals(6, this.group.size());
+
+        // The recently got locks get a second chance
+        Assert.assertEquals(0, this.group.evictIdle());
+        Assert.assertEquals(6, this.group.size());
+
+        // The locks in use can't be evicted
+        lock.lock();
+        atomicLock.lock(1);
+        rwLock.readLock().lock();
+        keyLock.lock("k");
+        rwKeyLock.writeLock("k");
+        rowLock.lock("k");
+        try {
+            Assert.assertEquals(0, this.group.evictIdle());
+            Assert.assertEquals(6, this.group.size());
+        } finally {
+            lock.unlock();
+            atomicLock.unlock();
+            rwLock.readLock().unlock();
+            keyLock.unlock("k");
+            rwKeyLock.unlockWrite("k");
+            rowLock.unlock("k");
+        }
+
+        // Access lock1 again to keep it
+        Assert.assertSame(lock, this.group.lock("lock1"));
+        Assert.assertEquals(5, this.group.evictIdle());
+        Assert.assertEquals(1, this.group.size());
+        Assert.assertSame(lock, this.group.lock("lock1"));
+
+        // The evicted locks are not released yet, so they are reused
+        Assert.assertSame(atomicLock, this.group.atomicLock("lock2"));
+        Assert.assertSame(rwLock, this.group.readWriteLock("lock3"));
+        Assert.assertSame(keyLock, this.group.keyLock("lock4"));
+        Assert.assertSame(rwKeyLock, this.group.readWriteKeyLock("lock5"));
+        Assert.assertSame(rowLock, this.group.rowLock("lock6"));
+        Assert.assertEquals(6, this.group.size());
+    }
+
+    @Test
+    public void testEvictIdleReleaseUnreferencedLocks()
+                throws InterruptedException {
+        WeakReference<KeyLock> ref = new WeakReference<>(
+                                     this.group.keyLock("lock"));
+        Assert.assertEquals(0, this.group.evictIdle());
+        Assert.assertEquals(1, this.group.evictIdle());
+        // Released by the next evicting since it's not in use
+        Assert.assertEquals(0, this.group.evictIdle());
+        for (int i = 0; i < 100 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        Assert.assertNull(ref.get());
+        Assert.assertNotNull(this.group.keyLock("lock"));
+    }
+
+    @Test
+    public void testEvictIdleBeforeLocked() throws InterruptedException {
+        // Got by a thread but not locked yet
+        KeyLock keyLock = this.group.keyLock("lock");
+        Assert.assertEquals(0, this.group.evictIdle());
+        Assert.assertEquals(1, this.group.evictIdle());
+        Assert.assertEquals(0, this.group.size());
+
+        // Another thread must get the same lock
+        KeyLock[] got = new KeyLock[1];
+        Thread thread = new Thread(() -> {
+            got[0] = this.group.keyLock("lock");
+        });
+        thread.start();
+        thread.join();
+        Assert.assertSame(keyLock, got[0]);
+        Assert.assertEquals(1, this.group.size());
+    }
+
+    @Test
+    public void testEvictIdleLockedAfterEvicted() throws InterruptedException {
+        // Got by a thread, evicted, then locked by the thread
+        Lock lock = this.group.lock("lock");
+        Assert.assertEquals(0, this.group.evictIdle());
+        Assert.assertEquals(1, this.group.evictIdle());
+        lock.lock();
+        WeakReference<Lock> ref = new WeakReference<>(lock);
+        lock = null;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        // The locked lock is kept, and must be got again to unlock
+        Assert.assertEquals(0, this.group.evictIdle());
+        Assert.assertNotNull(ref.get());
+        ReentrantLock got = (ReentrantLock) this.group.lock("lock");
+        Assert.assertSame(ref.get(), got);
+        Assert.assertTrue(got.isHeldByCurrentThread());
+        got.unlock();
+
+        // Released after unlocked
+        Assert.assertEquals(0, this.group.evictIdle());
+        Assert.assertEquals(1, this.group.evictIdle());
+        Assert.assertEquals(0, this.group.evictIdle());
+        Assert.assertNotSame(got, this.group.lock("lock"));
+    }
+
+    @Test
+    public void testEvictIdleWithConcurrentAccess() {
+        int[] count = new int[1];
+        runWithThreads(8, () -> {
+            for (int i = 0; i < 10000; i++) {
+                Lock lock = this.group.lock("lock");
+                lock.lock();
+                try {
+                    count[0]++;
+                } finally {
+                    lock.unlock();
+                }
+                if (i % 10 == 0) {
+                    this.group.evictIdle();
+                }
+            }
+        });
+        Assert.assertEquals(80000, count[0]);
+        Assert.assertTrue(this.group.size() <= 1);
+    }
+
     @Test
     public void testName() {
         Assert.assertEquals(GROUP, this.group.name());
@@ -19,13 +19,22 @@
 
 package com.baidu.hugegraph.unit.concurrent;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+
 import org.junit.After;
 import org.junit.Test;
 
+import com.baidu.hugegraph.concurrent.KeyLock;
 import com.baidu.hugegraph.concurrent.LockGroup;
 import com.baidu.hugegraph.concurrent.LockManager;
+import com.baidu.hugegraph.concurrent.WaitGraph;
 import com.baidu.hugegraph.testutil.Assert;
 import com.baidu.hugegraph.unit.BaseUnitTest;
+import com.google.common.collect.ImmutableSet;
 
 public class LockManagerTest extends BaseUnitTest {
 
@@ -124,4 +133,141 @@ public class LockManagerTest extends BaseUnitTest {
             Assert.assertContains("does not exists", e.getMessage());
         });
     }
+
+    @Test
+    public void testWaitGraphWithDeadlock() throws InterruptedException {
+        LockManager manager = LockManager.instance();
+        LockGroup lockGroup = manager.create(GROUP);
+        Lock lock1 = lockGroup.lock("lock1");
+        KeyLock lock2 = lockGroup.keyLock("lock2");
+
+        Assert.assertFalse(manager.waitGraph().hasDeadlock());
+
+        CountDownLatch latch = new CountDownLatch(2);
+        Thread thread1 = new Thread(() -> {
+            lock1.lock();
+            try {
+                latch.countDown();
+                latch.await();
+                Assert.assertFalse(lock2.tryLock("key", 10000L));
+            } catch (InterruptedException ignored) {
+                // pass
+            } finally {
+                lock1.unlock();
+            }
+        }, "deadlock-thread1");
+        Thread thread2 = new Thread(() -> {
+            lock2.lock("key");
+            try {
+                latch.countDown();
+                latch.await();
+                lock1.lockInterruptibly();
+                lock1.unlock();
+            } catch (InterruptedException ignored) {
+                // pass
+            } finally {
+                lock2.unlock("key");
+            }
+        }, "deadlock-thread2");
+
+        thread1.start();
+        thread2.start();
+        try {
+            WaitGraph graph = manager.waitGraph();
+            for (int i = 0; i < 500 && !graph.hasDeadlock(); i++) {
+                Thread.sleep(10L);
+                graph = manager.waitGraph();
+            }
+            Assert.assertTrue(graph.hasDeadlock());
+            Assert.assertEquals(1, graph.cycles().size());
+            Assert.assertContains("deadlock-0", graph.toString());
+
+            List<WaitGraph.Edge> cycle = graph.cycles().get(0);
+            Assert.assertEquals(2, cycle.size());
+            Set<String> waiters = new HashSet<>();
+            for (WaitGraph.Edge edge : cycle) {
+                waiters.add(edge.waiter());
+                Assert.assertNotEquals(edge.waiter(), edge.owner());
+                Assert.assertNotEquals(edge.waiterId(), edge.ownerId());
+                Assert.assertNotNull(edge.lock());
+            }
+            Assert.assertEquals(ImmutableSet.of("deadlock-thread1",
+                                                "deadlock-thread2"),
+                                waiters);
+
+            // Only the deadlocked threads are collected
+            WaitGraph deadlocks = WaitGraph.deadlocks();
+            Assert.assertNotNull(deadlocks);
+            Assert.assertEquals(1, deadlocks.cycles().size());
+            Assert.assertEquals(2, deadlocks.edges().size());
+        } finally {
+            thread1.interrupt();
+            thread2.interrupt();
+            thread1.join();
+            thread2.join();
+        }
+
+        Assert.assertFalse(manager.waitGraph().hasDeadlock());
+        Assert.assertNull(WaitGraph.deadlocks());
+    }
+
+    @Test
+    public void testDeadlockChecker() throws InterruptedException {
+        LockManager manager = LockManager.instance();
+        LockGroup lockGroup = manager.create(GROUP);
+        Lock lock1 = lockGroup.lock("lock1");
+        Lock lock2 = lockGroup.lock("lock2");
+
+        manager.startDeadlockChecker(10L);
+        CountDownLatch latch = new CountDownLatch(2);
+        Thread thread1 = new Thread(() -> {
+            lock1.lock();
+            try {
+                latch.countDown();
+                latch.await();
+                lock2.lockInterruptibly();
+                lock2.unlock();
+            } catch (InterruptedException ignored) {
+                // pass
+            } finally {
+                lock1.unlock();
+            }
+        });
+        Thread thread2 = new Thread(() -> {
+            lock2.lock();
+            try {
+                latch.countDown();
+                latch.await();
+                lock1.lockInterruptibly();
+                lock1.unlock();
+            } catch (InterruptedException ignored) {
+                // pass
+            } finally {
+                lock2.unlock();
+            }
+        });
+
+        thread1.start();
+        thread2.start();
+        try {
+            for (int i = 0; i < 500 && manager.lastDeadlock() == null; i++) {
+                Thread.sleep(10L);
+            }
+            WaitGraph deadlock = manager.lastDeadlock();
+            Assert.assertNotNull(deadlock);
+            Assert.assertTrue(deadlock.hasDeadlock());
+        } finally {
+            manager.stopDeadlockChecker();
+            thread1.interrupt();
+            thread2.interrupt();
+            thread1.join();
+            thread2.join();
+        }
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            manager.startDeadlockChecker(0L);
+        }, e -> {
+            Assert.assertContains("The interval must be > 0", e.getMessage());
+        });
+    }
 }
@@ -19,6 +19,9 @@
 
 package com.baidu.hugegraph.unit.concurrent;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -26,6 +29,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.baidu.hugegraph.concurrent.PausableScheduledThreadPool;
+import com.baidu.hugegraph.concurrent.PausableScheduledThreadPool.Priority;
+import com.baidu.hugegraph.concurrent.PausableScheduledThreadPool.PriorityTask;
 import com.baidu.hugegraph.util.ExecutorUtil;
 
 public class PausableScheduledThreadPoolTest {
@@ -92,4 +97,101 @@ public class PausableScheduledThreadPoolTest {
         executor.shutdownNow();
         executor.awaitTermination(3L, TimeUnit.SECONDS);
     }
+
+    @Test
+    public void testPauseWithPriority() throws InterruptedException {
+        PausableScheduledThreadPool executor =
+                ExecutorUtil.newPausableScheduledThreadPool("test");
+        List<String> results = Collections.synchronizedList(
+                               new ArrayList<>());
+        executor.pauseSchedule();
+        Assert.assertTrue(executor.paused());
+
+        executor.schedule(new PriorityTask(() -> {
+            results.add("low");
+        }, Priority.LOW), 0L, TimeUnit.MILLISECONDS);
+        executor.schedule(() -> {
+            results.add("normal");
+        }, 0L, TimeUnit.MILLISECONDS);
+        executor.schedule(new PriorityTask(() -> {
+            results.add("high");
+        }, Priority.HIGH), 10L, TimeUnit.MILLISECONDS);
+
+        // The high priority task is not held, and the worker is not blocked
+        Thread.sleep(200L);
+        synchronized (results) {
+            Assert.assertEquals(1, results.size());
+            Assert.assertEquals("high", results.get(0));
+        }
+        Assert.assertEquals(2, executor.heldTasks());
+        Assert.assertEquals(2, executor.queueDepth());
+
+        // The held tasks are released in order of priority
+        executor.resumeSchedule();
+        Assert.assertFalse(executor.paused());
+        Thread.sleep(200L);
+        synchronized (results) {
+            Assert.assertEquals(3, results.size());
+            Assert.assertEquals("normal", results.get(1));
+            Assert.assertEquals("low", results.get(2));
+        }
+        Assert.assertEquals(0, executor.heldTasks());
+        Assert.assertEquals(0, executor.queueDepth());
+
+        executor.shutdown();
+        executor.awaitTermination(3L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPauseWithDeadline() throws InterruptedException {
+        PausableScheduledThreadPool executor =
+                ExecutorUtil.newPausableScheduledThreadPool("test");
+        AtomicInteger counter = new AtomicInteger(0);
+        executor.pauseSchedule();
+        executor.schedule(new PriorityTask(counter::incrementAndGet,
+                                           Priority.NORMAL, 300L),
+                          0L, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(100L);
+        Assert.assertEquals(0, counter.get());
+        Assert.assertEquals(1, executor.heldTasks());
+
+        // Run at deadline even if still paused
+        Thread.sleep(400L);
+        Assert.assertEquals(1, counter.get());
+        Assert.assertEquals(0, executor.heldTasks());
+        Assert.assertTrue(executor.paused());
+
+        executor.resumeSchedule();
+        Thread.sleep(100L);
+        Assert.assertEquals(1, counter.get());
+
+        executor.shutdown();
+        executor.awaitTermination(3L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testMetrics() throws InterruptedException {
+        PausableScheduledThreadPool executor =
+                ExecutorUtil.newPausableScheduledThreadPool("test");
+        Assert.assertEquals(0L, executor.pauseCount());
+        Assert.assertEquals(0L, executor.pausedTime());
+        Assert.assertEquals(0L, executor.averageLatency());
+
+        executor.pauseSchedule();
+        executor.schedule(() -> {}, 0L, TimeUnit.MILLISECONDS);
+        Thread.sleep(200L);
+        executor.resumeSchedule();
+        Thread.sleep(100L);
+
+        Assert.assertEquals(1L, executor.pauseCount());
+        long pausedTime = executor.pausedTime();
+        Assert.assertTrue(pausedTime >= 200L && pausedTime < 1000L);
+        long latency = TimeUnit.NANOSECONDS.toMillis(executor.maxLatency());
+        Assert.assertTrue(latency >= 150L && latency < 1000L);
+        Assert.assertEquals(executor.maxLatency(), executor.averageLatency());
+
+        executor.shutdown();
+        executor.awaitTermination(3L, TimeUnit.SECONDS);
+    }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.unit.concurrent;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.concurrent.ReadWriteKeyLock;
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.unit.BaseUnitTest;
+import com.google.common.collect.ImmutableList;
+
+public class ReadWriteKeyLockTest extends BaseUnitTest {
+
+    @Test
+    public void testReadLockUnlock() {
+        ReadWriteKeyLock locks = new ReadWriteKeyLock();
+
+        Lock lock = locks.readLock("1");
+        try {
+            // lock again is OK
+            locks.readLock("1");
+            // read lock in other threads
+            runWithThreads(2, () -> {
+                locks.readLock("1");
+                locks.unlockRead("1");
+                Assert.assertNotEquals(0L, locks.tryOptimisticRead("1"));
+            });
+            locks.unlockRead("1");
+        } finally {
+            locks.unlockRead("1");
+        }
+        Assert.assertNotNull(lock);
+
+        Assert.assertThrows(IllegalMonitorStateException.class, () -> {
+            locks.unlockRead("1");
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.readLock(null);
+        }, e -> {
+            Assert.assertContains("Lock key can't be null", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.unlockRead(null);
+        }, e -> {
+            Assert.assertContains("Unlock key can't be null", e.getMessage());
+        });
+    }
+
+    @Test
+    public void testWriteLockUnlock() {
+        ReadWriteKeyLock locks = new ReadWriteKeyLock();
+
+        Lock lock = locks.writeLock("1");
+        try {
+            // lock again is OK
+            locks.writeLock("1");
+            // lock in other threads
+            runWithThreads(2, () -> {
+                Assert.assertFalse(lock.tryLock());
+                Assert.assertEquals(0L, locks.tryOptimisticRead("1"));
+            });
+            locks.unlockWrite("1");
+        } finally {
+            locks.unlockWrite("1");
+        }
+
+        runWithThreads(2, () -> {
+            Assert.assertTrue(lock.tryLock());
+            lock.unlock();
+        });
+
+        Assert.assertThrows(IllegalMonitorStateException.class, () -> {
+            locks.unlockWrite("1");
+        });
+
+        Assert.assertThrows(UnsupportedOperationException.class, () -> {
+            lock.newCondition();
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.writeLock(null);
+        }, e -> {
+            Assert.assertContains("Lock key can't be null", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.unlockWrite(null);
+        }, e -> {
+            Assert.assertContains("Unlock key can't be null", e.getMessage());
+        });
+    }
+
+    @Test
+    public void testOptimisticRead() {
+        ReadWriteKeyLock locks = new ReadWriteKeyLock(1);
+
+        long stamp = locks.tryOptimisticRead("1");
+        Assert.assertNotEquals(0L, stamp);
+        Assert.assertTrue(locks.validate("1", stamp));
+
+        // Reading doesn't invalidate the stamp
+        locks.readLock("1");
+        locks.unlockRead("1");
+        Assert.assertTrue(locks.validate("1", stamp));
+
+        locks.writeLock("2");
+        locks.writeLock("2");
+        Assert.assertEquals(0L, locks.tryOptimisticRead("1"));
+        Assert.assertFalse(locks.validate("1", stamp));
+        locks.unlockWrite("2");
+        Assert.assertEquals(0L, locks.tryOptimisticRead("1"));
+        locks.unlockWrite("2");
+        Assert.assertFalse(locks.validate("1", stamp));
+
+        stamp = locks.tryOptimisticRead("1");
+        Assert.assertNotEquals(0L, stamp);
+        Assert.assertTrue(locks.validate("1", stamp));
+
+        Assert.assertEquals(1, (int) locks.optimisticRead("1", () -> 1));
+
+        AtomicInteger reads = new AtomicInteger(0);
+        int result = locks.optimisticRead("1", () -> {
+            if (reads.incrementAndGet() == 1) {
+                runWithThreads(1, () -> {
+                    locks.writeLock("1");
+                    locks.unlockWrite("1");
+                });
+            }
+            return reads.get();
+        });
+        // Read again with the read lock held
+        Assert.assertEquals(2, result);
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.tryOptimisticRead(null);
+        }, e -> {
+            Assert.assertContains("Lock key can't be null", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.validate(null, 1L);
+        }, e -> {
+            Assert.assertContains("Lock key can't be null", e.getMessage());
+        });
+    }
+
+    @Test
+    public void testTryLock() throws InterruptedException {
+        ReadWriteKeyLock locks = new ReadWriteKeyLock(1024);
+
+        Assert.assertTrue(locks.tryReadLock("1", 0L));
+        Assert.assertTrue(locks.tryWriteLock("2", 0L));
+        try {
+            runWithThreads(1, () -> {
+                try {
+                    Assert.assertTrue(locks.tryReadLock("1", 10L));
+                    locks.unlockRead("1");
+                    Assert.assertFalse(locks.tryWriteLock("1", 10L));
+                    Assert.assertFalse(locks.tryReadLock("2", 10L));
+
+                    // None of the keys is locked if timed out
+                    Assert.assertNull(locks.tryReadLockAll(
+                                      ImmutableList.of("1", "2", "3"), 10L));
+                    Assert.assertNull(locks.tryWriteLockAll(
+                                      ImmutableList.of("3", "1"), 10L));
+                    List<Lock> ls = locks.tryReadLockAll(
+                                    ImmutableList.of("1", "3"), 10L);
+                    Assert.assertNotNull(ls);
+                    locks.unlockAll(ls);
+
+                    Thread.currentThread().interrupt();
+                    Assert.assertThrows(InterruptedException.class, () -> {
+                        locks.tryWriteLock("1", 1000L);
+                    });
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } finally {
+            locks.unlockRead("1");
+            locks.unlockWrite("2");
+        }
+
+        runWithThreads(1, () -> {
+            try {
+                List<Lock> ls = locks.tryWriteLockAll(
+                                ImmutableList.of("1", "2", "3"), 0L);
+                Assert.assertNotNull(ls);
+                locks.unlockAll(ls);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Assert.assertNotEquals(0L, locks.tryOptimisticRead("3"));
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.tryReadLock(null, 0L);
+        }, e -> {
+            Assert.assertContains("Lock key can't be null", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.tryWriteLock("1", -1L);
+        }, e -> {
+            Assert.assertContains("The timeout must be >= 0", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.tryWriteLockAll(ImmutableList.of(), 0L);
+        }, e -> {
+            Assert.assertContains("Lock keys can't be null or empty",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testLockUnlockAll() {
+        ReadWriteKeyLock locks = new ReadWriteKeyLock();
+
+        List<Lock> ls = locks.readLockAll("1", 2, 3);
+        runWithThreads(1, () -> {
+            List<Lock> ls2 = locks.readLockAll("1", 3);
+            locks.unlockAll(ls2);
+        });
+        locks.unlockAll(ls);
+
+        List<Lock> ls3 = locks.writeLockAll("1", 2, 3, "1");
+        Assert.assertTrue(ls3.size() <= 3);
+        runWithThreads(1, () -> {
+            for (Lock lock : ls3) {
+                Assert.assertFalse(lock.tryLock());
+            }
+        });
+        locks.unlockAll(ls3);
+
+        ReadWriteKeyLock lock1 = new ReadWriteKeyLock(1);
+        Assert.assertEquals(1, lock1.size());
+        List<Lock> ls4 = lock1.writeLockAll("1", 2, 3);
+        Assert.assertEquals(1, ls4.size());
+        lock1.unlockAll(ls4);
+        Assert.assertNotEquals(0L, lock1.tryOptimisticRead("1"));
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.readLockAll("1", null);
+        }, e -> {
+            Assert.assertContains("Lock key can't be null", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.writeLockAll();
+        }, e -> {
+            Assert.assertContains("Lock keys can't be null or empty",
+                                  e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            locks.unlockAll(null);
+        }, e -> {
+            Assert.assertContains("Unlock locks can't be null", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new ReadWriteKeyLock(0);
+        }, e -> {
+            Assert.assertContains("The size of ReadWriteKeyLock must be > 0",
+                                  e.getMessage());
+        });
+    }
+}
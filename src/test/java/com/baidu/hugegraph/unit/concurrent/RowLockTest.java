@@ -22,6 +22,7 @@ package com.baidu.hugegraph.unit.concurrent;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
@@ -29,6 +30,7 @@ import org.junit.Test;
 
 import com.baidu.hugegraph.concurrent.RowLock;
 import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.testutil.Whitebox;
 import com.baidu.hugegraph.unit.BaseUnitTest;
 import com.google.common.collect.ImmutableSet;
 
@@ -100,6 +102,76 @@ public class RowLockTest extends BaseUnitTest {
         });
     }
 
+    @Test
+    public void testRowTryLock() throws InterruptedException {
+        RowLock<Integer> lock = new RowLock<>();
+
+        Assert.assertTrue(lock.tryLock(1, 0L));
+        // Lock again is OK
+        Assert.assertTrue(lock.tryLock(1, 10L));
+        try {
+            runWithThreads(1, () -> {
+                try {
+                    Assert.assertFalse(lock.tryLock(1, 10L));
+                    Assert.assertTrue(lock.tryLock(2, 10L));
+                    lock.unlock(2);
+
+                    // None of the keys is locked if timed out
+                    Assert.assertFalse(lock.tryLockAll(
+                                       ImmutableSet.of(0, 1, 2), 10L));
+
+                    Thread.currentThread().interrupt();
+                    Assert.assertThrows(InterruptedException.class, () -> {
+                        lock.tryLockAll(ImmutableSet.of(0, 1), 1000L);
+                    });
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            runWithThreads(1, () -> {
+                try {
+                    Assert.assertTrue(lock.tryLockAll(ImmutableSet.of(0, 2),
+                                                      0L));
+                    lock.unlockAll(ImmutableSet.of(0, 2));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } finally {
+            lock.unlock(1);
+            lock.unlock(1);
+        }
+
+        runWithThreads(1, () -> {
+            try {
+                Assert.assertTrue(lock.tryLockAll(ImmutableSet.of(0, 1, 2),
+                                                  0L));
+                lock.unlockAll(ImmutableSet.of(0, 1, 2));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            lock.tryLock(null, 0L);
+        }, e -> {
+            Assert.assertContains("Lock key can't be null", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            lock.tryLock(1, -1L);
+        }, e -> {
+            Assert.assertContains("The timeout must be >= 0", e.getMessage());
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            lock.tryLockAll(ImmutableSet.of(), 0L);
+        }, e -> {
+            Assert.assertContains("Lock keys can't be null or empty",
+                                  e.getMessage());
+        });
+    }
+
     @Test
     public void testRowLockWithMultiThreads() {
         RowLock<Integer> lock = new RowLock<>();
@@ -158,4 +230,38 @@ public class RowLockTest extends BaseUnitTest {
 
         Assert.assertEquals(THREADS_NUM, names.size());
     }
+
+    @Test
+    public void testRowLockMutualExclusionWithRecycledNodes() {
+        RowLock<Integer> lock = new RowLock<>();
+        int keys = 4;
+        int times = 10000;
+        int[] counts = new int[keys];
+
+        runWithThreads(THREADS_NUM, () -> {
+            Random random = new Random();
+            for (int i = 0; i < times; i++) {
+                int key = random.nextInt(keys);
+                lock.lock(key);
+                try {
+                    // Reentrant lock
+                    lock.lock(key);
+                    counts[key]++;
+                    lock.unlock(key);
+                } finally {
+                    lock.unlock(key);
+                }
+            }
+        });
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        Assert.assertEquals(THREADS_NUM * times, total);
+
+        // All nodes are removed after unlocked
+        Map<?, ?> locks = Whitebox.getInternalState(lock, "locks");
+        Assert.assertEquals(0, locks.size());
+    }
 }
@@ -24,6 +24,11 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
@@ -34,6 +39,7 @@ import com.baidu.hugegraph.testutil.Assert;
 import com.baidu.hugegraph.unit.BaseUnitTest;
 import com.baidu.hugegraph.unit.iterator.ExtendableIteratorTest.CloseableItor;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 @SuppressWarnings("resource")
 public class BatchMapperIteratorTest extends BaseUnitTest {
@@ -346,4 +352,255 @@ public class BatchMapperIteratorTest extends BaseUnitTest {
         ((BatchMapperIterator<?, ?>) results).close();
         Assert.assertTrue(vals.closed());
     }
+
+    @Test
+    public void testAsyncBatchMapper() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Integer> data = ImmutableList.of(1, 2, 3, 4, 5, 6, 7, 8);
+            for (int batch = 1; batch <= 3; batch++) {
+                for (int prefetch = 1; prefetch <= 3; prefetch++) {
+                    Iterator<Integer> results = new BatchMapperIterator<>(
+                                                batch, data.iterator(),
+                                                MAPPER, pool, prefetch);
+                    Assert.assertEquals(data, ImmutableList.copyOf(results));
+                }
+            }
+
+            Iterator<Integer> results = new BatchMapperIterator<>(
+                                        2, EMPTY, MAPPER, pool, 2);
+            Assert.assertFalse(results.hasNext());
+            Assert.assertThrows(NoSuchElementException.class, () -> {
+                results.next();
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncBatchMapperWithNullOrEmptyResults() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Iterator<Integer> results = new BatchMapperIterator<>(
+                                        1, DATA3.iterator(), batch -> {
+                int value = batch.get(0);
+                if (value == 4) {
+                    return null;
+                }
+                if (value == 5) {
+                    return Collections.emptyIterator();
+                }
+                return batch.iterator();
+            }, pool, 2);
+            Assert.assertEquals(ImmutableList.of(6),
+                                ImmutableList.copyOf(results));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncPrefetch() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch nextBatchMapping = new CountDownLatch(1);
+            Iterator<Integer> results = new BatchMapperIterator<>(
+                                        2, DATA3.iterator(), batch -> {
+                if (batch.contains(4)) {
+                    // The first batch waits for the prefetched batch
+                    try {
+                        Assert.assertTrue(nextBatchMapping.await(
+                                          10L, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                } else {
+                    nextBatchMapping.countDown();
+                }
+                return batch.iterator();
+            }, pool, 1);
+            Assert.assertEquals(ImmutableList.of(4, 5, 6),
+                                ImmutableList.copyOf(results));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncInvalidArguments() {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        try {
+            Assert.assertThrows(IllegalArgumentException.class, () -> {
+                new BatchMapperIterator<>(0, DATA1.iterator(), MAPPER,
+                                          pool, 1);
+            });
+            Assert.assertThrows(IllegalArgumentException.class, () -> {
+                new BatchMapperIterator<>(1, DATA1.iterator(), MAPPER,
+                                          pool, 0);
+            }, e -> {
+                Assert.assertContains("Expect prefetch > 0, but got 0",
+                                      e.getMessage());
+            });
+            Assert.assertThrows(IllegalArgumentException.class, () -> {
+                new BatchMapperIterator<>(1, DATA1.iterator(), MAPPER,
+                                          null, 1);
+            }, e -> {
+                Assert.assertContains("The executor can't be null",
+                                      e.getMessage());
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncMapperThrowException() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Iterator<Integer> results = new BatchMapperIterator<>(
+                                        1, DATA3.iterator(), batch -> {
+                if (batch.contains(5)) {
+                    throw new IllegalArgumentException("Invalid value 5");
+                }
+                return batch.iterator();
+            }, pool, 2);
+            Assert.assertEquals(4, results.next());
+            Assert.assertThrows(IllegalArgumentException.class, () -> {
+                results.hasNext();
+            }, e -> {
+                Assert.assertEquals("Invalid value 5", e.getMessage());
+            });
+            // The failure is kept rather than skipping the failed batch
+            Assert.assertThrows(IllegalArgumentException.class, () -> {
+                results.next();
+            }, e -> {
+                Assert.assertEquals("Invalid value 5", e.getMessage());
+            });
+
+            Iterator<Integer> results2 = new BatchMapperIterator<>(
+                                         1, DATA1.iterator(), batch -> {
+                throw new Error("mapper error");
+            }, pool, 1);
+            Assert.assertThrows(Error.class, () -> {
+                results2.hasNext();
+            }, e -> {
+                Assert.assertEquals("mapper error", e.getMessage());
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncExecutorTerminated() throws Exception {
+        ThreadPoolExecutor pool = (ThreadPoolExecutor)
+                                  Executors.newFixedThreadPool(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Iterator<Integer> results = new BatchMapperIterator<>(
+                                    1, DATA3.iterator(), batch -> {
+            if (batch.contains(4)) {
+                // Not interrupted by shutdownNow()
+                Uninterruptibles.awaitUninterruptibly(release);
+            }
+            return batch.iterator();
+        }, pool, 2);
+
+        Thread terminator = new Thread(() -> {
+            // Wait for the batches 5 and 6 to be queued while mapping 4
+            while (pool.getQueue().size() < 2) {
+                Thread.yield();
+            }
+            Assert.assertEquals(2, pool.shutdownNow().size());
+            release.countDown();
+        });
+        terminator.start();
+
+        Assert.assertEquals(4, results.next());
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            results.hasNext();
+        }, e -> {
+            Assert.assertContains("executor was terminated", e.getMessage());
+        });
+        terminator.join();
+        // The failure is kept rather than hanging on the dropped batches
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            results.next();
+        }, e -> {
+            Assert.assertContains("executor was terminated", e.getMessage());
+        });
+    }
+
+    @Test
+    public void testAsyncClose() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        List<CloseableItor<Integer>> mapped = new ArrayList<>();
+        CountDownLatch mappedTwice = new CountDownLatch(2);
+        CloseableItor<Integer> vals = new CloseableItor<>(DATA3.iterator());
+        BatchMapperIterator<Integer, Integer> results;
+        results = new BatchMapperIterator<>(1, vals, batch -> {
+            CloseableItor<Integer> iter = new CloseableItor<>(
+                                          batch.iterator());
+            synchronized (mapped) {
+                mapped.add(iter);
+            }
+            mappedTwice.countDown();
+            return iter;
+        }, pool, 1);
+
+        Assert.assertEquals(4, results.next());
+        Assert.assertTrue(mappedTwice.await(10L, TimeUnit.SECONDS));
+        results.close();
+        Assert.assertTrue(vals.closed());
+
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10L, TimeUnit.SECONDS));
+        synchronized (mapped) {
+            // The consuming batch and the prefetched batch are both closed
+            Assert.assertEquals(2, mapped.size());
+            for (CloseableItor<Integer> iter : mapped) {
+                Assert.assertTrue(iter.closed());
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncCloseWhileMapping() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        List<CloseableItor<Integer>> mapped = new ArrayList<>();
+        CountDownLatch mapping = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchMapperIterator<Integer, Integer> results;
+        results = new BatchMapperIterator<>(1, DATA3.iterator(), batch -> {
+            if (batch.contains(5)) {
+                mapping.countDown();
+                try {
+                    Assert.assertTrue(release.await(10L, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            CloseableItor<Integer> iter = new CloseableItor<>(
+                                          batch.iterator());
+            synchronized (mapped) {
+                mapped.add(iter);
+            }
+            return iter;
+        }, pool, 1);
+
+        Assert.assertEquals(4, results.next());
+        // Close while the prefetched batch is still being mapped
+        Assert.assertTrue(mapping.await(10L, TimeUnit.SECONDS));
+        results.close();
+        release.countDown();
+
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10L, TimeUnit.SECONDS));
+        synchronized (mapped) {
+            Assert.assertEquals(2, mapped.size());
+            for (CloseableItor<Integer> iter : mapped) {
+                Assert.assertTrue(iter.closed());
+            }
+        }
+    }
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.unit.iterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.iterator.CIter;
+import com.baidu.hugegraph.iterator.CIterSpliterator;
+import com.baidu.hugegraph.iterator.ExtendableIterator;
+import com.baidu.hugegraph.iterator.FilterIterator;
+import com.baidu.hugegraph.iterator.FlatMapperIterator;
+import com.baidu.hugegraph.iterator.ListIterator;
+import com.baidu.hugegraph.iterator.MapperIterator;
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.unit.BaseUnitTest;
+import com.baidu.hugegraph.unit.iterator.ExtendableIteratorTest.CloseableItor;
+import com.google.common.collect.ImmutableList;
+
+@SuppressWarnings("resource")
+public class CIterSpliteratorTest extends BaseUnitTest {
+
+    private static final List<Integer> DATA = IntStream.range(0, 10000)
+                                                       .boxed()
+                                                       .collect(Collectors
+                                                       .toList());
+
+    @Test
+    public void testStream() {
+        CIter<Integer> iter = new MapperIterator<>(DATA.iterator(),
+                                                   i -> i * 2);
+        List<Integer> results = iter.stream().limit(3)
+                                    .collect(Collectors.toList());
+        Assert.assertEquals(ImmutableList.of(0, 2, 4), results);
+
+        // The stream consumes the remaining elements of the iterator
+        iter = new MapperIterator<>(DATA.iterator(), i -> i);
+        Assert.assertEquals(0, iter.next());
+        Assert.assertEquals(1, iter.next());
+        Assert.assertEquals(DATA.size() - 2, iter.stream().count());
+        Assert.assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void testParallelStream() {
+        long expected = DATA.stream().mapToLong(i -> i).sum();
+
+        CIter<Integer> iter = new FilterIterator<>(DATA.iterator(),
+                                                   i -> true);
+        Stream<Integer> stream = iter.parallelStream();
+        Assert.assertTrue(stream.isParallel());
+        Assert.assertEquals(expected, stream.mapToLong(i -> i).sum());
+
+        // The encounter order is kept
+        iter = new ListIterator<>(-1, DATA.iterator());
+        Assert.assertEquals(DATA, iter.parallelStream()
+                                      .map(i -> i)
+                                      .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testStreamClose() {
+        CloseableItor<Integer> origin = new CloseableItor<>(DATA.iterator());
+        CIter<Integer> iter = new MapperIterator<>(origin, i -> i);
+        try (Stream<Integer> stream = iter.parallelStream()) {
+            Assert.assertEquals(DATA.size(), stream.count());
+            Assert.assertFalse(origin.closed());
+        }
+        Assert.assertTrue(origin.closed());
+    }
+
+    @Test
+    public void testCharacteristics() {
+        Spliterator<Integer> spliterator;
+
+        spliterator = new MapperIterator<>(DATA.iterator(), i -> i)
+                      .spliterator();
+        Assert.assertTrue(spliterator.hasCharacteristics(
+                          Spliterator.ORDERED | Spliterator.NONNULL));
+        Assert.assertFalse(spliterator.hasCharacteristics(
+                           Spliterator.SIZED));
+        Assert.assertEquals(Long.MAX_VALUE, spliterator.estimateSize());
+        Assert.assertEquals(-1L, spliterator.getExactSizeIfKnown());
+
+        spliterator = new ExtendableIterator<>(DATA.iterator())
+                      .spliterator();
+        Assert.assertEquals(Spliterator.ORDERED,
+                            spliterator.characteristics());
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            spliterator = new FlatMapperIterator<Integer, Integer>(
+                          DATA.iterator(), i -> null, pool, 2, false)
+                          .spliterator();
+            Assert.assertEquals(Spliterator.NONNULL,
+                                spliterator.characteristics());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testListIteratorSized() {
+        ListIterator<Integer> iter = new ListIterator<>(DATA);
+        Spliterator<Integer> spliterator = iter.spliterator();
+        Assert.assertTrue(spliterator.hasCharacteristics(
+                          Spliterator.SIZED | Spliterator.SUBSIZED));
+        Assert.assertEquals(DATA.size(), spliterator.getExactSizeIfKnown());
+
+        Assert.assertTrue(spliterator.tryAdvance(i -> {
+            Assert.assertEquals(0, i);
+        }));
+        Assert.assertEquals(DATA.size() - 1, spliterator.estimateSize());
+
+        // The size includes the element fetched by hasNext()
+        Assert.assertTrue(iter.hasNext());
+        Assert.assertEquals(DATA.size() - 1,
+                            iter.spliterator().getExactSizeIfKnown());
+        Assert.assertEquals(1, iter.next());
+        Assert.assertEquals(DATA.size() - 2,
+                            iter.spliterator().getExactSizeIfKnown());
+        Assert.assertEquals(DATA.size() - 2, iter.stream().count());
+    }
+
+    @Test
+    public void testTrySplit() {
+        CIter<Integer> iter = new MapperIterator<>(DATA.iterator(), i -> i);
+        Spliterator<Integer> spliterator = iter.spliterator();
+
+        List<Integer> results = new ArrayList<>();
+        Spliterator<Integer> batch1 = spliterator.trySplit();
+        Assert.assertEquals(CIterSpliterator.BATCH_UNIT,
+                            batch1.getExactSizeIfKnown());
+        Assert.assertTrue(batch1.hasCharacteristics(Spliterator.ORDERED |
+                                                    Spliterator.NONNULL |
+                                                    Spliterator.SIZED));
+        batch1.forEachRemaining(results::add);
+
+        Spliterator<Integer> batch2 = spliterator.trySplit();
+        Assert.assertEquals(2 * CIterSpliterator.BATCH_UNIT,
+                            batch2.getExactSizeIfKnown());
+        batch2.forEachRemaining(results::add);
+
+        spliterator.forEachRemaining(results::add);
+        Assert.assertEquals(DATA, results);
+        Assert.assertNull(spliterator.trySplit());
+        Assert.assertFalse(spliterator.tryAdvance(i -> {
+            Assert.fail("Unexpected element " + i);
+        }));
+
+        // The split batch size is limited by the known size
+        ListIterator<Integer> list = new ListIterator<>(DATA.subList(0, 5));
+        spliterator = list.spliterator();
+        Spliterator<Integer> batch = spliterator.trySplit();
+        Assert.assertEquals(5L, batch.getExactSizeIfKnown());
+        Assert.assertEquals(0L, spliterator.getExactSizeIfKnown());
+        Assert.assertNull(spliterator.trySplit());
+    }
+
+    @Test
+    public void testMetadataOfIterator() {
+        AtomicInteger calls = new AtomicInteger();
+        CIter<Integer> origin = new ListIterator<Integer>(DATA) {
+            @Override
+            public Object metadata(String meta, Object... args) {
+                calls.incrementAndGet();
+                return meta;
+            }
+        };
+        CIterSpliterator<Integer> spliterator;
+        spliterator = new CIterSpliterator<>(origin, Spliterator.ORDERED);
+        Assert.assertSame(origin, spliterator.iterator());
+        Assert.assertEquals("page", spliterator.iterator().metadata("page"));
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        Iterator<Integer> iter = DATA.iterator();
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new CIterSpliterator<>(null, Spliterator.ORDERED);
+        }, e -> {
+            Assert.assertContains("The iterator can't be null",
+                                  e.getMessage());
+        });
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new CIterSpliterator<>(new MapperIterator<>(iter, i -> i), -1L,
+                                   Spliterator.ORDERED);
+        }, e -> {
+            Assert.assertContains("Expect size >= 0, but got -1",
+                                  e.getMessage());
+        });
+    }
+}
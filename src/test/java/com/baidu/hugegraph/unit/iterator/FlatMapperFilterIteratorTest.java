@@ -24,6 +24,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
@@ -81,6 +83,22 @@ public class FlatMapperFilterIteratorTest extends BaseUnitTest {
         Assert.assertEquals(ImmutableList.of(11, 22, 33, 44), actual);
     }
 
+    @Test
+    public void testParallelMapperFilter() {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Iterator<Integer> results = new FlatMapperFilterIterator<>(
+                                        DATA.keySet().iterator(),
+                                        key -> DATA.get(key).iterator(),
+                                        value -> value % 2 == 0,
+                                        pool, 2, true);
+            Assert.assertEquals(ImmutableList.of(22, 32, 42, 44),
+                                ImmutableList.copyOf(results));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
     @Test
     public void testHasNext() {
         Iterator<String> keys = DATA.keySet().iterator();
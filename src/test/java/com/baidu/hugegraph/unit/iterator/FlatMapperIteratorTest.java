@@ -24,17 +24,27 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import org.junit.Test;
 
 import com.baidu.hugegraph.iterator.FlatMapperIterator;
+import com.baidu.hugegraph.iterator.LimitIterator;
 import com.baidu.hugegraph.testutil.Assert;
 import com.baidu.hugegraph.unit.BaseUnitTest;
 import com.baidu.hugegraph.unit.iterator.ExtendableIteratorTest.CloseableItor;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 @SuppressWarnings("resource")
 public class FlatMapperIteratorTest extends BaseUnitTest {
@@ -178,4 +188,306 @@ public class FlatMapperIteratorTest extends BaseUnitTest {
         results.close();
         Assert.assertTrue(vals.closed());
     }
+
+    @Test
+    public void testParallelOrdered() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            List<Integer> expected = ImmutableList.copyOf(
+                                     new FlatMapperIterator<>(
+                                     DATA.keySet().iterator(), MAPPER));
+            for (int parallelism = 1; parallelism <= 5; parallelism++) {
+                FlatMapperIterator<String, Integer> results;
+                results = new FlatMapperIterator<>(DATA.keySet().iterator(),
+                                                   MAPPER, pool, parallelism,
+                                                   true);
+                Assert.assertTrue(results.ordered());
+                Assert.assertEquals(expected, ImmutableList.copyOf(results));
+            }
+
+            // The first element is expanded after the third one
+            CountDownLatch thirdMapped = new CountDownLatch(1);
+            Iterator<Integer> results = new FlatMapperIterator<>(
+                                        DATA.keySet().iterator(), key -> {
+                if (key.equals("first")) {
+                    await(thirdMapped);
+                } else if (key.equals("third")) {
+                    thirdMapped.countDown();
+                }
+                return MAPPER.apply(key);
+            }, pool, 3, true);
+            Assert.assertEquals(expected, ImmutableList.copyOf(results));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelUnordered() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch secondConsumed = new CountDownLatch(1);
+            FlatMapperIterator<String, Integer> results;
+            results = new FlatMapperIterator<>(DATA.keySet().iterator(),
+                                               key -> {
+                if (key.equals("first")) {
+                    await(secondConsumed);
+                }
+                return MAPPER.apply(key);
+            }, pool, 2, false);
+            Assert.assertFalse(results.ordered());
+
+            // The results of the second element come before the first
+            Assert.assertEquals(21, results.next());
+            secondConsumed.countDown();
+
+            List<Integer> actual = new ArrayList<>();
+            actual.add(21);
+            results.forEachRemaining(actual::add);
+            actual.sort(Integer::compare);
+            Assert.assertEquals(ImmutableList.of(11, 21, 22, 31, 32, 33,
+                                                 41, 42, 43, 44), actual);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelInvalidArguments() {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        try {
+            Assert.assertThrows(IllegalArgumentException.class, () -> {
+                new FlatMapperIterator<>(DATA.keySet().iterator(), MAPPER,
+                                         pool, 0, true);
+            }, e -> {
+                Assert.assertContains("Expect parallelism > 0, but got 0",
+                                      e.getMessage());
+            });
+            Assert.assertThrows(IllegalArgumentException.class, () -> {
+                new FlatMapperIterator<>(DATA.keySet().iterator(), MAPPER,
+                                         null, 1, false);
+            }, e -> {
+                Assert.assertContains("The executor can't be null",
+                                      e.getMessage());
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelMapperThrowException() {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (boolean ordered : new boolean[]{true, false}) {
+                Iterator<Integer> results = new FlatMapperIterator<>(
+                                            DATA.keySet().iterator(), key -> {
+                    if (key.equals("second")) {
+                        throw new IllegalArgumentException("Invalid key");
+                    }
+                    return MAPPER.apply(key);
+                }, pool, 1, ordered);
+                Assert.assertEquals(11, results.next());
+                Assert.assertThrows(IllegalArgumentException.class, () -> {
+                    results.next();
+                }, e -> {
+                    Assert.assertEquals("Invalid key", e.getMessage());
+                });
+                Assert.assertThrows(IllegalArgumentException.class, () -> {
+                    results.hasNext();
+                }, e -> {
+                    Assert.assertEquals("Invalid key", e.getMessage());
+                });
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelUnorderedTaskCancelled() throws Exception {
+        AtomicInteger submitted = new AtomicInteger(0);
+        ExecutorService pool = new ThreadPoolExecutor(
+                                   2, 2, 0L, TimeUnit.MILLISECONDS,
+                                   new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(Runnable command) {
+                if (submitted.incrementAndGet() == 2) {
+                    // Cancelled from outside before running
+                    ((Future<?>) command).cancel(false);
+                    return;
+                }
+                super.execute(command);
+            }
+        };
+        try {
+            Iterator<Integer> results = new FlatMapperIterator<>(
+                                        DATA.keySet().iterator(), MAPPER,
+                                        pool, 2, false);
+            Assert.assertThrows(IllegalStateException.class, () -> {
+                while (results.hasNext()) {
+                    results.next();
+                }
+            }, e -> {
+                Assert.assertContains("has been cancelled", e.getMessage());
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelUnorderedExecutorTerminated() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Iterator<Integer> results = new FlatMapperIterator<>(
+                                    DATA.keySet().iterator(), key -> {
+            if (key.equals("first")) {
+                firstStarted.countDown();
+                Uninterruptibles.awaitUninterruptibly(release);
+            }
+            return MAPPER.apply(key);
+        }, pool, 3, false);
+
+        Thread terminator = new Thread(() -> {
+            await(firstStarted);
+            // Drop the queued "second" and "third"
+            Assert.assertEquals(2, pool.shutdownNow().size());
+            release.countDown();
+        });
+        terminator.start();
+
+        List<Integer> actual = new ArrayList<>();
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            while (results.hasNext()) {
+                actual.add(results.next());
+            }
+        }, e -> {
+            Assert.assertContains("executor was terminated", e.getMessage());
+        });
+        terminator.join();
+        // The "forth" rejected by the executor is expanded by the caller
+        Assert.assertEquals(ImmutableList.of(11, 41, 42, 43, 44), actual);
+    }
+
+    @Test
+    public void testParallelOrderedExecutorTerminated() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Iterator<Integer> results = new FlatMapperIterator<>(
+                                    DATA.keySet().iterator(), key -> {
+            if (key.equals("first")) {
+                firstStarted.countDown();
+                Uninterruptibles.awaitUninterruptibly(release);
+            }
+            return MAPPER.apply(key);
+        }, pool, 4, true);
+
+        Thread terminator = new Thread(() -> {
+            await(firstStarted);
+            // Drop the queued "second", "third" and "forth"
+            Assert.assertEquals(3, pool.shutdownNow().size());
+            release.countDown();
+        });
+        terminator.start();
+
+        List<Integer> actual = new ArrayList<>();
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            while (results.hasNext()) {
+                actual.add(results.next());
+            }
+        }, e -> {
+            Assert.assertContains("executor was terminated", e.getMessage());
+        });
+        terminator.join();
+        Assert.assertEquals(ImmutableList.of(11), actual);
+
+        // The failure is kept
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            results.hasNext();
+        }, e -> {
+            Assert.assertContains("executor was terminated", e.getMessage());
+        });
+    }
+
+    @Test
+    public void testParallelRejectedByExecutor() throws Exception {
+        // Reject the tasks when the only thread is busy
+        ExecutorService pool = new ThreadPoolExecutor(
+                                   1, 1, 0L, TimeUnit.MILLISECONDS,
+                                   new SynchronousQueue<>());
+        try {
+            for (boolean ordered : new boolean[]{true, false}) {
+                Iterator<Integer> results = new FlatMapperIterator<>(
+                                            DATA.keySet().iterator(), MAPPER,
+                                            pool, 4, ordered);
+                List<Integer> actual = new ArrayList<>();
+                results.forEachRemaining(actual::add);
+                actual.sort(Integer::compare);
+                Assert.assertEquals(ImmutableList.of(11, 21, 22, 31, 32, 33,
+                                                     41, 42, 43, 44), actual);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelCloseByLimit() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        CloseableItor<String> keys = new CloseableItor<>(ImmutableList.of(
+                                     "third", "first", "second", "forth")
+                                     .iterator());
+        List<String> mappedKeys = new ArrayList<>();
+        List<CloseableItor<Integer>> mapped = new ArrayList<>();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        FlatMapperIterator<String, Integer> flatMapper;
+        flatMapper = new FlatMapperIterator<>(keys, key -> {
+            if (key.equals("first")) {
+                firstStarted.countDown();
+                await(release);
+            }
+            CloseableItor<Integer> iter = new CloseableItor<>(
+                                          MAPPER.apply(key));
+            synchronized (mapped) {
+                mappedKeys.add(key);
+                mapped.add(iter);
+            }
+            return iter;
+        }, pool, 3, true);
+
+        AtomicInteger count = new AtomicInteger(0);
+        Iterator<Integer> results = new LimitIterator<>(flatMapper, value -> {
+            return count.incrementAndGet() > 2;
+        });
+        Assert.assertEquals(31, results.next());
+        Assert.assertTrue(firstStarted.await(10L, TimeUnit.SECONDS));
+        Assert.assertEquals(32, results.next());
+        // Reach the limit and close the outstanding expansions
+        Assert.assertFalse(results.hasNext());
+        Assert.assertTrue(keys.closed());
+
+        release.countDown();
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10L, TimeUnit.SECONDS));
+        synchronized (mapped) {
+            Assert.assertEquals(ImmutableList.of("third", "first"),
+                                mappedKeys);
+            for (CloseableItor<Integer> iter : mapped) {
+                Assert.assertTrue(iter.closed());
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.unit.perf;
+
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.baidu.hugegraph.concurrent.KeyLock;
+import com.baidu.hugegraph.perf.PerfUtil;
+import com.baidu.hugegraph.perf.PerfUtil.FastMap;
+import com.baidu.hugegraph.testutil.AllocationMeter;
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.util.Histogram;
+import com.baidu.hugegraph.util.StringUtil.Chars;
+
+/**
+ * Check the allocated bytes per operation of the hot paths against the
+ * baselines in allocation-baseline.properties. Run with the system
+ * property allocation.record=true to print the measured values instead.
+ */
+public class AllocationTest {
+
+    private static final String BASELINE = "/allocation-baseline.properties";
+    private static final int OPS = 200000;
+
+    private static Properties baselines;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        Assume.assumeTrue(AllocationMeter.supported());
+        baselines = new Properties();
+        try (InputStream in = AllocationTest.class.getResourceAsStream(
+                                                  BASELINE)) {
+            baselines.load(in);
+        }
+    }
+
+    private static void check(String name, Runnable operation) {
+        if (Boolean.getBoolean("allocation.record")) {
+            double bytes = AllocationMeter.bytesPerOp(OPS, operation);
+            System.out.println(String.format("%s=%.0f", name, bytes));
+            return;
+        }
+        String baseline = baselines.getProperty(name);
+        Assert.assertNotNull("No baseline of " + name, baseline);
+        AllocationMeter.assertBytesPerOp(name, Double.parseDouble(baseline),
+                                         OPS, operation);
+    }
+
+    @Test
+    public void testPerfUtilStartEnd() {
+        PerfUtil perf = PerfUtil.instance();
+        int id = PerfUtil.siteId("alloc_site");
+        try {
+            check("perf.start_end_by_name", () -> {
+                perf.start("alloc_name");
+                perf.end("alloc_name");
+            });
+            check("perf.start_end_by_id", () -> {
+                perf.start(id);
+                perf.end(id);
+            });
+            PerfUtil.useSampling(10);
+            check("perf.watched_sampling", () -> {
+                perf.startWatched(id);
+                perf.endWatched(id);
+            });
+        } finally {
+            PerfUtil.useSampling(1);
+            perf.clear();
+        }
+    }
+
+    @Test
+    public void testFastMapGet() {
+        FastMap<String, Integer> map = new FastMap<>();
+        map.put("key", 1);
+        check("perf.fast_map_get", () -> {
+            map.get("key");
+        });
+    }
+
+    @Test
+    public void testCharsSplit() {
+        Chars[] buffer = new Chars[8];
+        check("util.chars_split", () -> {
+            Chars.split("g.V().out().count()", ".", buffer);
+        });
+    }
+
+    @Test
+    public void testKeyLockAllOfTwo() {
+        KeyLock locks = new KeyLock();
+        check("concurrent.key_lock", () -> {
+            Lock lock = locks.lock("key1");
+            lock.unlock();
+        });
+        check("concurrent.key_lock_all_of_two", () -> {
+            locks.unlockAll(locks.lockAll("key1", "key2"));
+        });
+        KeyLock.Handle handle = new KeyLock.Handle();
+        Object[] keys = {"key1", "key2"};
+        check("concurrent.key_lock_all_with_handle", () -> {
+            locks.unlockAll(locks.lockAllWith(handle, keys));
+        });
+    }
+
+    @Test
+    public void testHistogramRecord() {
+        Histogram histogram = new Histogram();
+        check("util.histogram_record", () -> {
+            histogram.record(12345L);
+        });
+    }
+}
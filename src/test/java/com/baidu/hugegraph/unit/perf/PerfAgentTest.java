@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.unit.perf;
+
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import com.baidu.hugegraph.perf.PerfAgent;
+import com.baidu.hugegraph.perf.PerfAgent.WatchedTransformer;
+import com.baidu.hugegraph.perf.PerfUtil;
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.unit.BaseUnitTest;
+import com.baidu.hugegraph.unit.perf.testclass.TestAgentClass;
+
+public class PerfAgentTest extends BaseUnitTest {
+
+    private static final String CLASS = TestAgentClass.class.getName();
+
+    @After
+    public void teardown() {
+        PerfUtil.instance().clear();
+    }
+
+    @Test
+    public void testTransform() throws Throwable {
+        WatchedTransformer transformer = new WatchedTransformer(
+                                         "com.baidu.hugegraph.unit.perf");
+        String name = CLASS.replace('.', '/');
+        Assert.assertTrue(transformer.matches(name));
+        Assert.assertTrue(transformer.matches(CLASS));
+        Assert.assertFalse(transformer.matches("com/baidu/hugegraph/Foo"));
+
+        byte[] classfile = classfile(CLASS);
+        ClassLoader loader = this.getClass().getClassLoader();
+        byte[] bytes = transformer.transform(loader, name, null,
+                                             null, classfile);
+        Assert.assertNotNull(bytes);
+        Assert.assertTrue(transformer.transformed(CLASS));
+
+        // Not matched or without watched method
+        Assert.assertNull(transformer.transform(loader, "java/lang/Foo",
+                                                null, null, classfile));
+        String other = PerfAgentTest.class.getName();
+        Assert.assertNull(transformer.transform(loader,
+                                                other.replace('.', '/'),
+                                                null, null,
+                                                classfile(other)));
+        Assert.assertFalse(transformer.transformed(other));
+
+        // Load the transformed class and call the watched methods
+        Class<?> clazz = new ByteClassLoader(loader).define(CLASS, bytes);
+        Object obj = clazz.newInstance();
+        clazz.getMethod("foo").invoke(obj);
+
+        String json = PerfUtil.instance().toJson();
+        Assert.assertContains("\"agent.foo\":{", json);
+        Assert.assertContains("\"agent.foo/agent.bar\":{", json);
+    }
+
+    @Test
+    public void testAttachWithoutInstalled() {
+        Assert.assertFalse(PerfAgent.installed());
+        Assert.assertFalse(PerfAgent.attached());
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            PerfAgent.attach("com.baidu.hugegraph");
+        }, e -> {
+            Assert.assertContains("The perf agent is not installed",
+                                  e.getMessage());
+        });
+    }
+
+    private static byte[] classfile(String className) throws Exception {
+        String resource = "/" + className.replace('.', '/') + ".class";
+        try (InputStream in = PerfAgentTest.class.getResourceAsStream(
+                                                  resource)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static class ByteClassLoader extends ClassLoader {
+
+        public ByteClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define(String name, byte[] bytes) {
+            return this.defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.unit.perf;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import com.baidu.hugegraph.perf.JsonLinesSink;
+import com.baidu.hugegraph.perf.MetricsSink;
+import com.baidu.hugegraph.perf.PerfReporter;
+import com.baidu.hugegraph.perf.PerfReporter.Metric;
+import com.baidu.hugegraph.perf.PerfUtil;
+import com.baidu.hugegraph.perf.PrometheusSink;
+import com.baidu.hugegraph.perf.Stopwatch.Path;
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.unit.BaseUnitTest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+public class PerfReporterTest extends BaseUnitTest {
+
+    private static final PerfUtil perf = PerfUtil.instance();
+
+    @After
+    public void teardown() {
+        perf.clear();
+    }
+
+    @Test
+    public void testReportDeltas() throws Throwable {
+        StringWriter json = new StringWriter();
+        PrometheusSink prometheus = new PrometheusSink();
+        PerfReporter reporter = new PerfReporter(new JsonLinesSink(json),
+                                                 prometheus);
+        Assert.assertEquals(2, reporter.sinks().size());
+
+        call("report_foo", 2);
+        Metric metric = find(reporter.report(), "report_foo");
+        Assert.assertEquals(2L, metric.times());
+        Assert.assertGt(0L, metric.totalCost());
+        Assert.assertEquals(metric.totalCost() / 2L, metric.meanCost());
+
+        call("report_foo", 1);
+        Assert.assertEquals(1L, find(reporter.report(), "report_foo").times());
+
+        // Not called since last report
+        Assert.assertNull(find(reporter.report(), "report_foo"));
+
+        // Reset since last report
+        perf.clear();
+        call("report_foo", 1);
+        Assert.assertEquals(1L, find(reporter.report(), "report_foo").times());
+
+        // Reset by a snapshot since last report
+        PerfUtil.snapshot(true);
+        call("report_foo", 1);
+        Assert.assertEquals(1L, find(reporter.report(), "report_foo").times());
+
+        // The calls of a dead thread are reported once
+        Thread thread = new Thread(() -> {
+            PerfUtil p = PerfUtil.instance();
+            for (int i = 0; i < 2; i++) {
+                p.start("report_foo");
+                p.end("report_foo");
+            }
+        });
+        thread.start();
+        thread.join();
+        Assert.assertEquals(2L, find(reporter.report(), "report_foo").times());
+        PerfUtil.snapshot(true);
+        Assert.assertNull(find(reporter.report(), "report_foo"));
+
+        ObjectMapper mapper = new ObjectMapper();
+        long times = 0L;
+        for (String line : json.toString().split("\n")) {
+            Map<?, ?> values = mapper.readValue(line, Map.class);
+            if ("report_foo".equals(values.get("path"))) {
+                times += ((Number) values.get("times")).longValue();
+                Assert.assertTrue(values.containsKey("timestamp"));
+                Assert.assertTrue(values.containsKey("total_cost"));
+                Assert.assertTrue(values.containsKey("mean_cost"));
+            }
+        }
+        Assert.assertEquals(7L, times);
+
+        StringWriter text = new StringWriter();
+        prometheus.write(text);
+        Assert.assertContains("# TYPE hugegraph_perf_calls_total counter\n",
+                              text.toString());
+        Assert.assertContains("hugegraph_perf_calls_total" +
+                              "{path=\"report_foo\"} 7\n", text.toString());
+        Assert.assertContains("hugegraph_perf_cost_seconds_total" +
+                              "{path=\"report_foo\"} ", text.toString());
+
+        reporter.stop();
+    }
+
+    @Test
+    public void testJsonLinesSinkEscapePath() throws Throwable {
+        StringWriter json = new StringWriter();
+        JsonLinesSink sink = new JsonLinesSink(json);
+        String name = "foo\"\\bar\n\tbaz\u0001";
+        sink.report(1L, ImmutableList.of(new Metric(new Path(name), 2L, 4L)));
+        sink.close();
+
+        String[] lines = json.toString().split("\n");
+        Assert.assertEquals(1, lines.length);
+        Map<?, ?> values = new ObjectMapper().readValue(lines[0], Map.class);
+        Assert.assertEquals(name, values.get("path"));
+        Assert.assertEquals(2, values.get("times"));
+        Assert.assertEquals(2, values.get("mean_cost"));
+    }
+
+    @Test
+    public void testReportPeriodically() throws Throwable {
+        File dir = FileUtils.getTempDirectory();
+        File jsonFile = new File(dir, "perf-reporter-test.json");
+        File textFile = new File(dir, "perf-reporter-test.prom");
+        FileUtils.deleteQuietly(jsonFile);
+        FileUtils.deleteQuietly(textFile);
+
+        MetricsSink json = new JsonLinesSink(jsonFile.getPath());
+        MetricsSink text = new PrometheusSink(textFile.getPath());
+        PerfReporter reporter = new PerfReporter(json, text);
+        try {
+            call("report_bar", 3);
+            reporter.start(10L);
+            Assert.assertThrows(IllegalStateException.class, () -> {
+                reporter.start(10L);
+            }, e -> {
+                Assert.assertContains("has been started", e.getMessage());
+            });
+
+            String expected = "hugegraph_perf_calls_total" +
+                              "{path=\"report_bar\"} 3\n";
+            for (int i = 0; i < 100; i++) {
+                if (textFile.exists() &&
+                    read(textFile).contains(expected)) {
+                    break;
+                }
+                Thread.sleep(10L);
+            }
+            Assert.assertContains(expected, read(textFile));
+            Assert.assertContains("\"path\":\"report_bar\",\"times\":3,",
+                                  read(jsonFile));
+        } finally {
+            reporter.stop();
+            FileUtils.deleteQuietly(jsonFile);
+            FileUtils.deleteQuietly(textFile);
+        }
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new PerfReporter();
+        }, e -> {
+            Assert.assertContains("at least one metrics sink",
+                                  e.getMessage());
+        });
+    }
+
+    private static void call(String name, int times) {
+        for (int i = 0; i < times; i++) {
+            perf.start(name);
+            perf.end(name);
+        }
+    }
+
+    private static Metric find(List<Metric> metrics, String path) {
+        for (Metric metric : metrics) {
+            if (metric.path().toString().equals(path)) {
+                return metric;
+            }
+        }
+        return null;
+    }
+
+    private static String read(File file) throws Exception {
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+}
@@ -19,13 +19,21 @@
 
 package com.baidu.hugegraph.unit.perf;
 
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.After;
 import org.junit.Test;
 
 import com.baidu.hugegraph.perf.PerfUtil;
+import com.baidu.hugegraph.perf.PerfUtil.ClockSource;
 import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.testutil.Whitebox;
 import com.baidu.hugegraph.unit.BaseUnitTest;
 import com.baidu.hugegraph.unit.perf.testclass.TestClass;
 import com.baidu.hugegraph.unit.perf.testclass.TestLightClass;
@@ -33,6 +41,13 @@ import com.baidu.hugegraph.unit.perf.testclass.TestPerfClass;
 import com.baidu.hugegraph.unit.perf.testclass.TestPerfLightClass;
 import com.baidu.hugegraph.unit.perf.testclass2.TestClass4Package;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.expr.ExprEditor;
+import javassist.expr.MethodCall;
 
 public class PerfUtilTest extends BaseUnitTest {
 
@@ -211,6 +226,245 @@ public class PerfUtilTest extends BaseUnitTest {
         assertContains(json, "bar.foo/bar.bar#times", 1);
     }
 
+    @Test
+    public void testPerfUtil4HistogramStopwatch() throws Throwable {
+        PerfUtil.useHistogramStopwatch(true);
+        try {
+            for (int i = 0; i < 10; i++) {
+                perf.start("histogram_foo");
+                perf.start("histogram_bar");
+                perf.end("histogram_bar");
+                perf.end("histogram_foo");
+            }
+            perf.toString();
+            perf.toECharts();
+            String json = perf.toJson();
+            assertContains(json, "histogram_foo#times", 10);
+            assertContains(json, "histogram_foo#p50");
+            assertContains(json, "histogram_foo#p90");
+            assertContains(json, "histogram_foo#p99");
+            assertContains(json, "histogram_foo#p999");
+            assertContains(json, "histogram_foo/histogram_bar#times", 10);
+            assertContains(json, "histogram_foo/histogram_bar#p999");
+
+            json = PerfUtil.merge().toJson();
+            assertContains(json, "histogram_foo#p99");
+
+            Assert.assertThrows(IllegalArgumentException.class, () -> {
+                PerfUtil.useHistogramStopwatch(false);
+            }, e -> {
+                Assert.assertContains("Please call clear() before switching",
+                                      e.getMessage());
+            });
+        } finally {
+            perf.clear();
+            PerfUtil.useHistogramStopwatch(false);
+        }
+
+        perf.start("histogram_foo");
+        perf.end("histogram_foo");
+        Assert.assertNull(actualValue(perf.toJson(), "histogram_foo#p99"));
+    }
+
+    @Test
+    public void testPerfUtilWithSiteId() throws Throwable {
+        int foo = PerfUtil.siteId("site_foo");
+        int bar = PerfUtil.siteId("site_bar");
+        Assert.assertEquals(foo, PerfUtil.siteId("site_foo"));
+        Assert.assertNotEquals(foo, bar);
+        Assert.assertEquals("site_foo", PerfUtil.siteName(foo));
+
+        for (int i = 0; i < 2; i++) {
+            perf.start(foo);
+            perf.start(bar);
+            perf.end(bar);
+            perf.end(foo);
+        }
+        // Mix with the watches started by name
+        perf.start("site_foo");
+        perf.start(bar);
+        perf.end("site_bar");
+        perf.end(foo);
+
+        String json = perf.toJson();
+        assertContains(json, "site_foo#times", 3);
+        assertContains(json, "site_foo#name", "site_foo");
+        assertContains(json, "site_foo/site_bar#times", 3);
+        assertContains(json, "site_foo/site_bar#parent", "site_foo");
+
+        perf.start(foo);
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            perf.end(bar);
+        }, e -> {
+            Assert.assertContains("Invalid watch name: site_bar",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testProfileWithSiteId() throws Throwable {
+        // Profile a copy of the class in a separate pool, without loading
+        ClassPool pool = new ClassPool(true);
+        CtClass ctClass = pool.get(prefix + "TestClass$Bar");
+        CtMethod method = ctClass.getDeclaredMethod("foo");
+        Whitebox.invokeStatic(PerfUtil.class, "profile", method);
+
+        List<String> calls = new ArrayList<>();
+        method.instrument(new ExprEditor() {
+            @Override
+            public void edit(MethodCall call) {
+                if (call.getClassName().equals(PerfUtil.class.getName()) &&
+                    !call.getMethodName().equals("instance")) {
+                    calls.add(call.getMethodName() + call.getSignature());
+                }
+            }
+        });
+        // The site is referenced by int id instead of the name, and the
+        // end is inserted for both normal return and exception
+        Assert.assertEquals(ImmutableList.of("startWatched(I)V",
+                                             "endWatched(I)V",
+                                             "endWatched(I)V"), calls);
+        Assert.assertEquals("bar_foo",
+                            PerfUtil.siteName(PerfUtil.siteId("bar_foo")));
+    }
+
+    @Test
+    public void testPerfUtilWithSampling() throws Throwable {
+        int foo = PerfUtil.siteId("sample_foo");
+        int bar = PerfUtil.siteId("sample_bar");
+
+        PerfUtil.useSampling(2);
+        try {
+            for (int i = 0; i < 100; i++) {
+                perf.startWatched(foo);
+                perf.startWatched(bar);
+                perf.endWatched(bar);
+                perf.endWatched(foo);
+            }
+        } finally {
+            PerfUtil.useSampling(1);
+        }
+
+        // The sampled calls are scaled back to all calls
+        String json = perf.toJson();
+        assertContains(json, "sample_foo#times", 100);
+        assertContains(json, "sample_foo/sample_bar#times", 100);
+        Assert.assertFalse(json.contains("\"sample_bar\":"));
+
+        perf.clear();
+        perf.startWatched(foo);
+        perf.endWatched(foo);
+        assertContains(perf.toJson(), "sample_foo#times", 1);
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            PerfUtil.useSampling(0);
+        }, e -> {
+            Assert.assertContains("The sample interval must be > 0",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testPerfUtilWithSamplingBudget() throws Throwable {
+        int foo = PerfUtil.siteId("budget_foo");
+
+        PerfUtil.useSamplingBudget(1L);
+        try {
+            long end = System.currentTimeMillis() + 1200L;
+            while (System.currentTimeMillis() < end) {
+                perf.startWatched(foo);
+                Thread.sleep(1L);
+                perf.endWatched(foo);
+            }
+        } finally {
+            PerfUtil.useSamplingBudget(0L);
+        }
+
+        // The interval is doubled after the first window
+        int[] intervals = Whitebox.getInternalState(perf,
+                                                    "sampler.intervals");
+        Assert.assertEquals(2, intervals[foo]);
+        String json = perf.toJson();
+        assertContains(json, "budget_foo#name", "budget_foo");
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            PerfUtil.useSamplingBudget(-1L);
+        }, e -> {
+            Assert.assertContains("The sample budget must be >= 0",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testPerfUtilToFlameGraph() throws Throwable {
+        for (int i = 0; i < 2; i++) {
+            perf.start("flame_foo");
+            Thread.sleep(1L);
+            perf.start("flame_bar");
+            Thread.sleep(1L);
+            perf.end("flame_bar");
+            perf.end("flame_foo");
+        }
+
+        StringWriter writer = new StringWriter();
+        perf.toFlameGraph(writer);
+
+        Map<String, Long> lines = new HashMap<>();
+        for (String line : writer.toString().split("\n")) {
+            int sep = line.lastIndexOf(' ');
+            lines.put(line.substring(0, sep),
+                      Long.parseLong(line.substring(sep + 1)));
+        }
+        Assert.assertEquals(2, lines.size());
+        long foo = lines.get("flame_foo");
+        long bar = lines.get("flame_foo;flame_bar");
+        Assert.assertTrue(foo > 0L);
+        Assert.assertTrue(bar > 0L);
+
+        String json = perf.toJson();
+        Map<?, ?> watch = (Map<?, ?>) new ObjectMapper().readValue(
+                                      json, Map.class).get("flame_foo");
+        long total = ((Number) watch.get("total_cost")).longValue();
+        Assert.assertEquals(total, foo + bar);
+
+        // Export the merged stopwatches
+        writer = new StringWriter();
+        PerfUtil.merge().toFlameGraph(writer);
+        Assert.assertContains("flame_foo;flame_bar " + bar,
+                              writer.toString());
+
+        // The separators in names are replaced, and a sibling sorted
+        // between the parent and child is not taken as an ancestor
+        perf.clear();
+        perf.start("flame_foo");
+        Thread.sleep(1L);
+        perf.start("flame bar;baz");
+        Thread.sleep(1L);
+        perf.end("flame bar;baz");
+        perf.end("flame_foo");
+        perf.start("flame_foo.x");
+        Thread.sleep(1L);
+        perf.end("flame_foo.x");
+
+        writer = new StringWriter();
+        perf.toFlameGraph(writer);
+        lines.clear();
+        for (String line : writer.toString().split("\n")) {
+            int sep = line.lastIndexOf(' ');
+            lines.put(line.substring(0, sep),
+                      Long.parseLong(line.substring(sep + 1)));
+        }
+        Assert.assertEquals(3, lines.size());
+        foo = lines.get("flame_foo");
+        bar = lines.get("flame_foo;flame_bar_baz");
+        json = perf.toJson();
+        watch = (Map<?, ?>) new ObjectMapper().readValue(
+                            json, Map.class).get("flame_foo");
+        total = ((Number) watch.get("total_cost")).longValue();
+        Assert.assertEquals(total, foo + bar);
+        Assert.assertTrue(lines.get("flame_foo.x") > 0L);
+    }
+
     @Test
     public void testPerfUtilWithSingleThread() throws Throwable {
         perf.profileClass(prefix + "TestClass$Bar");
@@ -391,6 +645,43 @@ public class PerfUtilTest extends BaseUnitTest {
         assertContains(json, "testNew#times", 2);
     }
 
+    @Test
+    public void testPerfUtilWithClockSource() throws Throwable {
+        Assert.assertEquals(ClockSource.NANO_TIME, PerfUtil.clock());
+
+        // Avoid calculating the wasted time of normal stopwatch
+        PerfUtil.useLightStopwatch(true);
+        try {
+            PerfUtil.useClock(ClockSource.COARSE, 100000L);
+            Assert.assertEquals(ClockSource.COARSE, PerfUtil.clock());
+            perf.start("coarse_foo");
+            Thread.sleep(5L);
+            perf.end("coarse_foo");
+            String json = perf.toJson();
+            assertContains(json, "coarse_foo#times", 1);
+            Map<?, ?> watch = (Map<?, ?>) new ObjectMapper().readValue(
+                                          json, Map.class).get("coarse_foo");
+            long cost = ((Number) watch.get("total_cost")).longValue();
+            Assert.assertGt(4000000L, cost);
+
+            PerfUtil.useLocalTimer(true);
+            Assert.assertEquals(ClockSource.SPIN, PerfUtil.clock());
+            PerfUtil.useClock(ClockSource.NANO_TIME);
+            Assert.assertEquals(ClockSource.NANO_TIME, PerfUtil.clock());
+        } finally {
+            perf.clear();
+            PerfUtil.useClock(ClockSource.NANO_TIME);
+            PerfUtil.useLightStopwatch(false);
+        }
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            PerfUtil.useClock(ClockSource.COARSE, 0L);
+        }, e -> {
+            Assert.assertContains("The clock resolution must be > 0",
+                                  e.getMessage());
+        });
+    }
+
     @Test
     public void testPerfUtilPerf4LightStopwatch() throws Throwable {
         perf.profileClass(prefix + "TestPerfLightClass");
@@ -440,6 +731,129 @@ public class PerfUtilTest extends BaseUnitTest {
         assertContains(json, "testNew#times", 1);
     }
 
+    @Test
+    public void testPerfUtilMerge() throws Throwable {
+        runWithThreads(4, () -> {
+            PerfUtil p = PerfUtil.instance();
+            for (int i = 0; i < 10; i++) {
+                p.start("merge_foo");
+                p.start("merge_bar");
+                p.end("merge_bar");
+                p.end("merge_foo");
+            }
+        });
+        perf.start("merge_foo");
+        perf.end("merge_foo");
+
+        PerfUtil merged = PerfUtil.merge();
+        merged.toString();
+        merged.toECharts();
+        String json = merged.toJson();
+        assertContains(json, "merge_foo#times", 41);
+        assertContains(json, "merge_foo#parent", "");
+        assertContains(json, "merge_foo/merge_bar#times", 40);
+        assertContains(json, "merge_foo/merge_bar#parent", "merge_foo");
+        long minCost = ((Number) actualValue(json, "merge_foo#min_cost"))
+                       .longValue();
+        long maxCost = ((Number) actualValue(json, "merge_foo#max_cost"))
+                       .longValue();
+        Assert.assertTrue(minCost > 0L && minCost <= maxCost);
+
+        // The merged one is detached
+        Assert.assertNull(actualValue(perf.toJson(), "merge_foo/merge_bar"));
+
+        json = PerfUtil.snapshot(true).toJson();
+        assertContains(json, "merge_foo#times", 41);
+        // Reset after snapshot
+        json = PerfUtil.snapshot(false).toJson();
+        Assert.assertNull(actualValue(json, "merge_foo"));
+
+        perf.start("merge_foo");
+        perf.end("merge_foo");
+        json = PerfUtil.merge().toJson();
+        assertContains(json, "merge_foo#times", 1);
+    }
+
+    @Test
+    public void testPerfUtilSnapshotBusyThread() throws Throwable {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch snapshotted = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            PerfUtil p = PerfUtil.instance();
+            p.start("busy_bar");
+            p.end("busy_bar");
+            p.start("busy_foo");
+            running.countDown();
+            try {
+                snapshotted.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            // Hand over the stopwatches when the outermost call ends
+            p.end("busy_foo");
+            p.start("busy_bar");
+            p.end("busy_bar");
+        });
+        thread.start();
+        running.await();
+
+        // Can't reset the thread which is running a call
+        String json = PerfUtil.snapshot(true).toJson();
+        Assert.assertNull(actualValue(json, "busy_bar"));
+        json = PerfUtil.merge().toJson();
+        assertContains(json, "busy_bar#times", 1);
+
+        snapshotted.countDown();
+        thread.join();
+
+        // Neither lost nor counted twice
+        json = PerfUtil.snapshot(true).toJson();
+        assertContains(json, "busy_foo#times", 1);
+        assertContains(json, "busy_bar#times", 2);
+        json = PerfUtil.snapshot(true).toJson();
+        Assert.assertNull(actualValue(json, "busy_bar"));
+    }
+
+    @Test
+    public void testPerfUtilPeriodicSnapshot() throws Throwable {
+        List<PerfUtil> snapshots = new CopyOnWriteArrayList<>();
+        PerfUtil.startSnapshot(50L, snapshots::add);
+        try {
+            Assert.assertThrows(IllegalStateException.class, () -> {
+                PerfUtil.startSnapshot(50L, snapshots::add);
+            }, e -> {
+                Assert.assertContains("has been started", e.getMessage());
+            });
+
+            perf.start("snapshot_foo");
+            perf.end("snapshot_foo");
+            String json = null;
+            long deadline = System.currentTimeMillis() + 3000L;
+            while (System.currentTimeMillis() < deadline) {
+                for (PerfUtil snapshot : snapshots) {
+                    if (snapshot.toJson().contains("snapshot_foo")) {
+                        json = snapshot.toJson();
+                    }
+                }
+                if (json != null) {
+                    break;
+                }
+                Thread.sleep(10L);
+            }
+            Assert.assertNotNull(json);
+            assertContains(json, "snapshot_foo#times", 1);
+        } finally {
+            PerfUtil.stopSnapshot();
+        }
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            PerfUtil.startSnapshot(0L, snapshots::add);
+        }, e -> {
+            Assert.assertContains("The interval must be > 0",
+                                  e.getMessage());
+        });
+    }
+
     private static void assertContains(String json, String key)
                                        throws Exception {
         Assert.assertNotNull("Not exist key " + key, actualValue(json, key));
@@ -21,6 +21,7 @@ package com.baidu.hugegraph.unit.perf;
 
 import org.junit.Test;
 
+import com.baidu.hugegraph.perf.HistogramStopwatch;
 import com.baidu.hugegraph.perf.LightStopwatch;
 import com.baidu.hugegraph.perf.NormalStopwatch;
 import com.baidu.hugegraph.perf.Stopwatch;
@@ -58,12 +59,19 @@ public class StopwatchTest extends BaseUnitTest {
         Assert.assertEquals(null, watch1.child("w3", watch3));
         Assert.assertEquals(null, watch1.child("w4", watch4));
         Assert.assertEquals(null, watch1.child("w5", watch5));
+        Assert.assertEquals(null, watch1.child(1, watch2));
 
+        // The copy doesn't share the children
+        Stopwatch copy = watch1.copy();
         watch1.clear();
         Assert.assertEquals(null, watch1.child("w2"));
         Assert.assertEquals(null, watch1.child("w3"));
         Assert.assertEquals(null, watch1.child("w4"));
         Assert.assertEquals(null, watch1.child("w5"));
+        Assert.assertEquals(null, watch1.child(1));
+        Assert.assertEquals(watch2, copy.child("w2"));
+        Assert.assertEquals(watch5, copy.child("w5"));
+        Assert.assertEquals(watch2, copy.child(1));
     }
 
     @Test
@@ -101,4 +109,69 @@ public class StopwatchTest extends BaseUnitTest {
         Assert.assertEquals(null, watch1.child("w4"));
         Assert.assertEquals(null, watch1.child("w5"));
     }
+
+    @Test
+    public void testStopwatchChildById() {
+        for (Stopwatch watch1 : new Stopwatch[]{
+                                new NormalStopwatch("w1", Path.EMPTY),
+                                new LightStopwatch("w1", Path.EMPTY)}) {
+            Stopwatch watch2 = new NormalStopwatch("w2", watch1.id());
+            Stopwatch watch3 = new NormalStopwatch("w3", watch1.id());
+
+            Assert.assertEquals(null, watch1.child(0));
+            Assert.assertEquals(null, watch1.child(100));
+            Assert.assertEquals(null, watch1.child(1, watch2));
+            Assert.assertEquals(null, watch1.child(100, watch3));
+            Assert.assertEquals(watch2, watch1.child(1));
+            Assert.assertEquals(watch3, watch1.child(100));
+            Assert.assertEquals(null, watch1.child(0));
+            Assert.assertEquals(null, watch1.child(99));
+
+            Assert.assertEquals(watch3, watch1.child(100, null));
+            Assert.assertEquals(null, watch1.child(100));
+            Assert.assertEquals(null, watch1.child(1000, null));
+
+            watch1.clear();
+            Assert.assertEquals(null, watch1.child(1));
+        }
+    }
+
+    @Test
+    public void testHistogramStopwatch() {
+        HistogramStopwatch watch = new HistogramStopwatch("w1", Path.EMPTY);
+        Assert.assertEquals(0L, watch.percentile(50D));
+
+        for (int i = 0; i < 100; i++) {
+            watch.startTime(System.nanoTime());
+            watch.endTime(System.nanoTime());
+        }
+        Assert.assertEquals(100L, watch.times());
+        long p50 = watch.percentile(50D);
+        long p99 = watch.percentile(99D);
+        Assert.assertTrue(p50 >= watch.minCost());
+        Assert.assertTrue(p50 <= p99 && p99 <= watch.maxCost());
+        Assert.assertEquals(watch.maxCost(), watch.percentile(100D));
+
+        String json = watch.toJson();
+        Assert.assertTrue(json, json.startsWith(
+                          "{\"parent\":\"\",\"name\":\"w1\",\"times\":100,"));
+        Assert.assertContains(",\"p50\":" + p50 + ",", json);
+        Assert.assertContains(",\"p99\":" + p99 + ",", json);
+        Assert.assertTrue(json, json.endsWith("}"));
+
+        HistogramStopwatch other = new HistogramStopwatch("w1", Path.EMPTY);
+        other.startTime(System.nanoTime());
+        other.endTime(System.nanoTime());
+        other.merge(watch);
+        Assert.assertEquals(101L, other.times());
+        Assert.assertEquals(watch.maxCost(), other.percentile(100D));
+
+        // The copy doesn't share the buckets
+        HistogramStopwatch copy = (HistogramStopwatch) watch.copy();
+        watch.clear();
+        Assert.assertEquals(0L, watch.times());
+        Assert.assertEquals(0L, watch.percentile(50D));
+        Assert.assertEquals(100L, copy.times());
+        Assert.assertEquals(p50, copy.percentile(50D));
+    }
 }
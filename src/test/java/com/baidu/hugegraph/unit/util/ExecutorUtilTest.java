@@ -0,0 +1,261 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.unit.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.concurrent.BlockingRejectedPolicy;
+import com.baidu.hugegraph.concurrent.ExecutorMetrics;
+import com.baidu.hugegraph.concurrent.MetricsForkJoinPool;
+import com.baidu.hugegraph.concurrent.MetricsThreadPoolExecutor;
+import com.baidu.hugegraph.concurrent.PausableScheduledThreadPool;
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.util.ExecutorUtil;
+
+public class ExecutorUtilTest {
+
+    @Test
+    public void testFixedThreadPool() throws Exception {
+        ExecutorService executor = ExecutorUtil.newFixedThreadPool(
+                                                "test-fixed-%d");
+        try {
+            // The plain pool keeps the submitted tasks as is
+            Assert.assertFalse(executor instanceof ExecutorMetrics);
+            Future<String> future = executor.submit(() -> {
+                return Thread.currentThread().getName();
+            });
+            Assert.assertEquals("test-fixed-1", future.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ScheduledExecutorService scheduled;
+        scheduled = ExecutorUtil.newScheduledThreadPool("test-scheduled-%d");
+        try {
+            Assert.assertFalse(scheduled instanceof
+                               PausableScheduledThreadPool);
+        } finally {
+            scheduled.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMetricsThreadPoolRemove() throws Exception {
+        MetricsThreadPoolExecutor executor = ExecutorUtil.newMetricsThreadPool(
+                                             "test-fixed-%d");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                started.countDown();
+                await(latch);
+            });
+            started.await();
+            Runnable task = () -> {};
+            executor.execute(task);
+            Assert.assertEquals(1, executor.queueDepth());
+            Assert.assertTrue(executor.remove(task));
+            Assert.assertEquals(0, executor.queueDepth());
+            Assert.assertFalse(executor.remove(task));
+        } finally {
+            latch.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMetricsThreadPool() throws Exception {
+        ExecutorService executor = ExecutorUtil.newMetricsThreadPool(
+                                                "test-fixed-%d");
+        ExecutorMetrics metrics = ExecutorUtil.metrics(executor);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                started.countDown();
+                await(latch);
+            });
+            Future<String> future = executor.submit(() -> {
+                return Thread.currentThread().getName();
+            });
+            started.await();
+            Assert.assertEquals(1, metrics.activeThreads());
+            Assert.assertEquals(1, metrics.queueDepth());
+
+            Thread.sleep(50L);
+            latch.countDown();
+            Assert.assertEquals("test-fixed-1", future.get());
+            Assert.assertEquals(0, metrics.queueDepth());
+            Assert.assertGte(TimeUnit.MILLISECONDS.toNanos(50L),
+                             metrics.maxLatency());
+            Assert.assertLte(metrics.maxLatency(), metrics.averageLatency());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWorkStealingPool() throws Exception {
+        MetricsForkJoinPool executor = ExecutorUtil.newWorkStealingPool(
+                                                    2, "test-fork-%d");
+        try {
+            Assert.assertEquals(2, executor.getParallelism());
+            Future<String> future = executor.submit(() -> {
+                return Thread.currentThread().getName();
+            });
+            Assert.assertTrue(future.get().startsWith("test-fork-"));
+
+            CountDownLatch latch = new CountDownLatch(10);
+            for (int i = 0; i < 10; i++) {
+                executor.execute(latch::countDown);
+            }
+            latch.await();
+            Assert.assertGte(0L, executor.maxLatency());
+            Assert.assertGte(0, executor.queueDepth());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            ExecutorUtil.newWorkStealingPool(0, "test-fork-%d");
+        }, e -> {
+            Assert.assertContains("The parallelism must be > 0",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testBoundedThreadPool() throws Exception {
+        MetricsThreadPoolExecutor executor = ExecutorUtil.newBoundedThreadPool(
+                                             1, 1, "test-bounded-%d");
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            executor.execute(() -> await(latch));
+            executor.execute(() -> {});
+            Assert.assertEquals(1, executor.queueDepth());
+            Assert.assertThrows(RejectedExecutionException.class, () -> {
+                executor.execute(() -> {});
+            });
+        } finally {
+            latch.countDown();
+            executor.shutdown();
+            executor.awaitTermination(3L, TimeUnit.SECONDS);
+        }
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            ExecutorUtil.newBoundedThreadPool(1, 0, "test-bounded-%d");
+        }, e -> {
+            Assert.assertContains("The queue capacity must be > 0",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testBoundedThreadPoolWithBackpressure() throws Exception {
+        ThreadPoolExecutor executor = ExecutorUtil.newBoundedThreadPool(
+                                      1, 1, "test-bounded-%d",
+                                      new BlockingRejectedPolicy(2000L));
+        CountDownLatch latch = new CountDownLatch(3);
+        try {
+            executor.execute(() -> {
+                sleep(100L);
+                latch.countDown();
+            });
+            executor.execute(latch::countDown);
+            // Block until the queue has space instead of rejecting
+            executor.execute(latch::countDown);
+            Assert.assertTrue(latch.await(3L, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(3L, TimeUnit.SECONDS);
+        }
+
+        ThreadPoolExecutor executor2 = ExecutorUtil.newBoundedThreadPool(
+                                       1, 1, "test-bounded-%d",
+                                       new BlockingRejectedPolicy(10L));
+        CountDownLatch latch2 = new CountDownLatch(1);
+        try {
+            executor2.execute(() -> await(latch2));
+            executor2.execute(() -> {});
+            Assert.assertThrows(RejectedExecutionException.class, () -> {
+                executor2.execute(() -> {});
+            }, e -> {
+                Assert.assertContains("still full after waiting 10 ms",
+                                      e.getMessage());
+            });
+        } finally {
+            latch2.countDown();
+            executor2.shutdown();
+            executor2.awaitTermination(3L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testVirtualThreadExecutor() throws Exception {
+        ExecutorService executor = ExecutorUtil.newVirtualThreadExecutor(
+                                                "test-virtual-%d");
+        ExecutorMetrics metrics = ExecutorUtil.metrics(executor);
+        try {
+            Future<String> future = executor.submit(() -> {
+                return Thread.currentThread().getName();
+            });
+            Assert.assertTrue(future.get().startsWith("test-virtual-"));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(3L, TimeUnit.SECONDS);
+        }
+        // The active threads are counted down after the future is done
+        Assert.assertEquals(0, metrics.queueDepth());
+        Assert.assertEquals(0, metrics.activeThreads());
+    }
+
+    @Test
+    public void testMetricsWithUnsupportedExecutor() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            ExecutorUtil.metrics(Runnable::run);
+        }, e -> {
+            Assert.assertContains("doesn't support metrics", e.getMessage());
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ignored) {
+            // Ignore
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ignored) {
+            // Ignore
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.unit.util;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.unit.BaseUnitTest;
+import com.baidu.hugegraph.util.Histogram;
+
+public class HistogramTest extends BaseUnitTest {
+
+    @Test
+    public void testIndex() {
+        for (long value : new long[]{0L, 1L, 31L, 32L, 33L, 63L, 64L, 65L,
+                                     1000L, 123456789L, Long.MAX_VALUE}) {
+            int index = Histogram.index(value);
+            long lowest = Histogram.lowestValue(index);
+            long highest = Histogram.highestValue(index);
+            Assert.assertTrue(lowest <= value && value <= highest);
+            // The relative error is less than 1/32
+            Assert.assertTrue((highest - lowest) * 32 <= Math.max(lowest, 1));
+        }
+    }
+
+    @Test
+    public void testRecord() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0L, histogram.count());
+        Assert.assertEquals(0L, histogram.min());
+        Assert.assertEquals(0L, histogram.max());
+        Assert.assertEquals(0L, histogram.mean());
+        Assert.assertEquals(0L, histogram.percentile(99D));
+
+        for (long i = 1L; i <= 1000L; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(1000L, histogram.count());
+        Assert.assertEquals(500500L, histogram.sum());
+        Assert.assertEquals(1L, histogram.min());
+        Assert.assertEquals(1000L, histogram.max());
+        Assert.assertEquals(500L, histogram.mean());
+
+        long[] values = histogram.percentiles(50D, 90D, 99D, 100D);
+        assertNear(500L, values[0]);
+        assertNear(900L, values[1]);
+        assertNear(990L, values[2]);
+        Assert.assertEquals(1000L, values[3]);
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            histogram.percentile(101D);
+        }, e -> {
+            Assert.assertContains("The percentile must be in [0, 100]",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testRecordConcurrently() {
+        Histogram histogram = new Histogram();
+        runWithThreads(8, () -> {
+            for (int i = 0; i < 10000; i++) {
+                histogram.record(i);
+            }
+        });
+        Assert.assertEquals(80000L, histogram.count());
+        Assert.assertEquals(0L, histogram.min());
+        Assert.assertEquals(9999L, histogram.max());
+        assertNear(5000L, histogram.percentile(50D));
+    }
+
+    @Test
+    public void testMergeAndReset() {
+        Histogram histogram = new Histogram();
+        Histogram other = new Histogram();
+        histogram.record(10L);
+        other.record(5L);
+        other.record(1000L);
+        histogram.merge(other);
+        Assert.assertEquals(3L, histogram.count());
+        Assert.assertEquals(5L, histogram.min());
+        Assert.assertEquals(1000L, histogram.max());
+        Assert.assertEquals(10L, histogram.percentile(50D));
+
+        histogram.reset();
+        Assert.assertEquals(0L, histogram.count());
+        Assert.assertEquals(0L, histogram.min());
+        Assert.assertEquals(0L, histogram.percentile(50D));
+    }
+
+    @Test
+    public void testToJson() {
+        Histogram histogram = new Histogram();
+        histogram.record(3L);
+        Assert.assertEquals("{\"count\":1,\"min\":3,\"max\":3,\"mean\":3," +
+                            "\"p50\":3,\"p90\":3,\"p99\":3,\"p999\":3}",
+                            histogram.toJson());
+    }
+
+    private static void assertNear(long expected, long actual) {
+        Assert.assertTrue(String.format("Expect %s near %s", actual, expected),
+                          Math.abs(actual - expected) <= expected / 32 + 1);
+    }
+}
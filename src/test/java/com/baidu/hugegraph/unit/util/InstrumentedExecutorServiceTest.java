@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.unit.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.util.ExecutorUtil;
+import com.baidu.hugegraph.util.InstrumentedExecutorService;
+
+public class InstrumentedExecutorServiceTest {
+
+    @Test
+    public void testRecordTime() throws Exception {
+        InstrumentedExecutorService executor = ExecutorUtil.instrument(
+                "test-pool", ExecutorUtil.newFixedThreadPool("test-%d"));
+        try {
+            Assert.assertSame(executor,
+                              InstrumentedExecutorService.instance(
+                              "test-pool"));
+            CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {
+                    // Ignore
+                }
+            });
+            Future<Integer> future = executor.submit(() -> 1);
+            Thread.sleep(100L);
+            latch.countDown();
+            Assert.assertEquals(1, (int) future.get());
+            executor.shutdown();
+            executor.awaitTermination(3L, TimeUnit.SECONDS);
+
+            Assert.assertEquals(2L, executor.submitted());
+            Assert.assertEquals(0L, executor.rejected());
+            Assert.assertEquals(2L, executor.waitTime().count());
+            Assert.assertEquals(2L, executor.execTime().count());
+            // The first task blocks the second one about 100ms
+            Assert.assertGte(TimeUnit.MILLISECONDS.toNanos(90L),
+                             executor.waitTime().max());
+            Assert.assertGte(TimeUnit.MILLISECONDS.toNanos(90L),
+                             executor.execTime().max());
+        } finally {
+            executor.shutdownNow();
+        }
+        // Unregistered after shutdown
+        Assert.assertNull(InstrumentedExecutorService.instance("test-pool"));
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        InstrumentedExecutorService executor = ExecutorUtil.instrument(
+                "test-pool", ExecutorUtil.newBoundedThreadPool(1, 1,
+                                                               "test-%d"));
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {
+                    // Ignore
+                }
+            });
+            executor.execute(() -> {});
+            Assert.assertThrows(RejectedExecutionException.class, () -> {
+                executor.execute(() -> {});
+            });
+            Assert.assertEquals(3L, executor.submitted());
+            Assert.assertEquals(1L, executor.rejected());
+        } finally {
+            latch.countDown();
+            executor.shutdown();
+            executor.awaitTermination(3L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testToJson() throws Exception {
+        ExecutorService pool = ExecutorUtil.newFixedThreadPool("test-%d");
+        InstrumentedExecutorService executor1 = ExecutorUtil.instrument(
+                                                "test-pool1", pool);
+        InstrumentedExecutorService executor2 = ExecutorUtil.instrument(
+                                                "test-pool2", pool);
+        try {
+            executor1.submit(() -> {}).get();
+            // Wait for the exec time recorded after the task completed
+            pool.submit(() -> {}).get();
+            String json = executor1.toJson();
+            Assert.assertTrue(json, json.startsWith(
+                              "{\"name\":\"test-pool1\",\"submitted\":1," +
+                              "\"rejected\":0,\"wait_time\":{\"count\":1,"));
+            Assert.assertContains("\"exec_time\":{\"count\":1,", json);
+
+            String all = InstrumentedExecutorService.toJsonAll();
+            Assert.assertContains("\"test-pool1\":" + json, all);
+            Assert.assertContains("\"test-pool2\":" + executor2.toJson(),
+                                  all);
+        } finally {
+            executor1.shutdown();
+            executor2.shutdown();
+        }
+    }
+
+    @Test
+    public void testDuplicateName() throws Exception {
+        ExecutorService pool = ExecutorUtil.newFixedThreadPool("test-%d");
+        InstrumentedExecutorService executor = ExecutorUtil.instrument(
+                                               "test-dup", pool);
+        try {
+            Assert.assertThrows(IllegalArgumentException.class, () -> {
+                ExecutorUtil.instrument("test-dup", pool);
+            }, e -> {
+                Assert.assertContains("The executor 'test-dup' has been " +
+                                      "registered", e.getMessage());
+            });
+            Assert.assertSame(executor,
+                              InstrumentedExecutorService.instance(
+                              "test-dup"));
+        } finally {
+            executor.shutdown();
+        }
+        // Can register the name again after shutdown
+        ExecutorUtil.instrument("test-dup", pool).shutdown();
+    }
+
+    @Test
+    public void testToJsonWithEscapedName() throws Exception {
+        String name = "test \"pool\"\\1";
+        InstrumentedExecutorService executor = ExecutorUtil.instrument(
+                name, ExecutorUtil.newFixedThreadPool("test-%d"));
+        try {
+            String json = executor.toJson();
+            Assert.assertTrue(json, json.startsWith(
+                              "{\"name\":\"test \\\"pool\\\"\\\\1\","));
+            Assert.assertContains("\"test \\\"pool\\\"\\\\1\":{",
+                                  InstrumentedExecutorService.toJsonAll());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
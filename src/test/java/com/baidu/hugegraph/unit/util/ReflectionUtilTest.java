@@ -95,7 +95,7 @@ public class ReflectionUtilTest extends BaseUnitTest {
         @SuppressWarnings("unchecked")
         List<ClassInfo> classes = IteratorUtils.toList(ReflectionUtil.classes(
                                   "com.baidu.hugegraph.util"));
-        Assert.assertEquals(17, classes.size());
+        Assert.assertEquals(19, classes.size());
         classes.sort((c1, c2) -> c1.getName().compareTo(c2.getName()));
         Assert.assertEquals("com.baidu.hugegraph.util.Bytes",
                             classes.get(0).getName());
@@ -104,7 +104,7 @@ public class ReflectionUtilTest extends BaseUnitTest {
         Assert.assertEquals("com.baidu.hugegraph.util.CollectionUtil",
                             classes.get(2).getName());
         Assert.assertEquals("com.baidu.hugegraph.util.VersionUtil",
-                            classes.get(16).getName());
+                            classes.get(18).getName());
     }
 
     @Test